@@ -0,0 +1,260 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Percolation backend for very large lattices. Open sites are a
+ *  bitmap in a long[], and the union-find is a single int per site: a parent
+ *  index, or for a root the negated rank and top/bottom bits. That is about
+ *  4.1 bytes per site instead of 9, and the parent array can be kept off the
+ *  Java heap in direct buffers.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.SplittableRandom;
+
+public class CompactPercolation implements PercolationModel {
+    // bits of a root's code: does the component touch the top or the bottom row?
+    private static final int TOP = 1;
+    private static final int BOTTOM = 2;
+
+    // largest n such that n * n sites are addressable with int indices
+    private static final int MAX_N = 46340;
+
+    private final int n;
+    private final long[] opened;
+    private final Sites parent;
+    private int countOpen = 0;
+    private boolean percolates;
+
+    // creates n-by-n grid, with all sites initially blocked
+    public CompactPercolation(int n) {
+        this(n, false);
+    }
+
+    // same as above, keeping the union-find off the Java heap if offHeap is
+    // set; direct memory is bounded by -XX:MaxDirectMemorySize, not -Xmx
+    public CompactPercolation(int n, boolean offHeap) {
+        if (n < 1 || n > MAX_N) {
+            throw new IllegalArgumentException("n must be between 1 and " + MAX_N);
+        }
+
+        this.n = n;
+        int sites = n * n;
+        opened = new long[(sites + 63) >>> 6];
+        parent = offHeap ? new DirectSites(sites) : new HeapSites(sites);
+    }
+
+    // opens the site (row, col) if it is not open already
+    public void open(int row, int col) {
+        int ix = getIndex(row, col);
+        if (isOpen(ix)) {
+            return;
+        }
+
+        opened[ix >>> 6] |= 1L << ix;
+        countOpen++;
+
+        int edges = 0;
+        if (row == 1) {
+            edges |= TOP;
+        }
+
+        if (row == n) {
+            edges |= BOTTOM;
+        }
+
+        if (edges == (TOP | BOTTOM)) {
+            percolates = true;
+        }
+
+        parent.set(ix, rootCode(0, edges));
+
+        if (row > 1) {
+            connectIfOpen(ix, ix - n);
+        }
+
+        if (row < n) {
+            connectIfOpen(ix, ix + n);
+        }
+
+        if (col > 1) {
+            connectIfOpen(ix, ix - 1);
+        }
+
+        if (col < n) {
+            connectIfOpen(ix, ix + 1);
+        }
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        return isOpen(getIndex(row, col));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        int ix = getIndex(row, col);
+        return isOpen(ix) && (flags(parent.get(find(ix))) & TOP) != 0;
+    }
+
+    // returns the number of open sites
+    public int numberOfOpenSites() {
+        return countOpen;
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        return percolates;
+    }
+
+    // test client (optional)
+    public static void main(String[] args) {
+        if (args == null || args.length < 1 || args.length > 2) {
+            throw new IllegalArgumentException("usage: java-algs4 CompactPercolation 30000 [offheap]");
+        }
+
+        int n = Integer.parseInt(args[0]);
+        boolean offHeap = args.length == 2 && "offheap".equals(args[1]);
+
+        PercolationModel perc = new CompactPercolation(n, offHeap);
+        SplittableRandom random = new SplittableRandom();
+        while (!perc.percolates()) {
+            perc.open(random.nextInt(1, n + 1), random.nextInt(1, n + 1));
+        }
+
+        StdOut.printf("n = %d, open fraction = %.6f%n", n,
+                      perc.numberOfOpenSites() / ((double) n * n));
+    }
+
+    private boolean isOpen(int ix) {
+        return (opened[ix >>> 6] & (1L << ix)) != 0;
+    }
+
+    private void connectIfOpen(int ix, int neighbour) {
+        if (isOpen(neighbour)) {
+            union(ix, neighbour);
+        }
+    }
+
+    // path halving: every other node on the path is pointed at its grandparent
+    private int find(int p) {
+        int up = parent.get(p);
+        while (up >= 0) {
+            int grand = parent.get(up);
+            if (grand < 0) {
+                return up;
+            }
+
+            parent.set(p, grand);
+            p = grand;
+            up = parent.get(p);
+        }
+        return p;
+    }
+
+    // union by rank, merging the top/bottom bits into the surviving root
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ)
+            return;
+
+        int codeP = parent.get(rootP);
+        int codeQ = parent.get(rootQ);
+        if (rank(codeP) < rank(codeQ)) {
+            int tmp = rootP;
+            rootP = rootQ;
+            rootQ = tmp;
+
+            tmp = codeP;
+            codeP = codeQ;
+            codeQ = tmp;
+        }
+
+        int rank = rank(codeP) + (rank(codeP) == rank(codeQ) ? 1 : 0);
+        int edges = flags(codeP) | flags(codeQ);
+
+        parent.set(rootQ, rootP);
+        parent.set(rootP, rootCode(rank, edges));
+
+        if (edges == (TOP | BOTTOM)) {
+            percolates = true;
+        }
+    }
+
+    // roots store -1 - (rank << 2 | edges), which is always negative
+    private static int rootCode(int rank, int edges) {
+        return -1 - ((rank << 2) | edges);
+    }
+
+    private static int rank(int code) {
+        return (-1 - code) >>> 2;
+    }
+
+    private static int flags(int code) {
+        return (-1 - code) & (TOP | BOTTOM);
+    }
+
+    private int getIndex(int row, int col) {
+        return n * (validate(row) - 1) + validate(col) - 1;
+    }
+
+    private int validate(int p) {
+        if (p < 1 || p > n) {
+            throw new IllegalArgumentException("index " + p + " is not between 1 and " + n);
+        }
+        return p;
+    }
+
+    // one int per site; entries of blocked sites are never read
+    private interface Sites {
+        int get(int i);
+
+        void set(int i, int value);
+    }
+
+    private static final class HeapSites implements Sites {
+        private final int[] values;
+
+        HeapSites(int size) {
+            values = new int[size];
+        }
+
+        public int get(int i) {
+            return values[i];
+        }
+
+        public void set(int i, int value) {
+            values[i] = value;
+        }
+    }
+
+    // direct buffers of at most 2^28 ints (1 GiB) each
+    private static final class DirectSites implements Sites {
+        private static final int CHUNK_BITS = 28;
+        private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+        private final IntBuffer[] chunks;
+
+        DirectSites(int size) {
+            chunks = new IntBuffer[(size + CHUNK_MASK) >>> CHUNK_BITS];
+            for (int c = 0; c < chunks.length; c++) {
+                int ints = Math.min(size - (c << CHUNK_BITS), 1 << CHUNK_BITS);
+                chunks[c] = ByteBuffer.allocateDirect(ints * Integer.BYTES)
+                                      .order(ByteOrder.nativeOrder())
+                                      .asIntBuffer();
+            }
+        }
+
+        public int get(int i) {
+            return chunks[i >>> CHUNK_BITS].get(i & CHUNK_MASK);
+        }
+
+        public void set(int i, int value) {
+            chunks[i >>> CHUNK_BITS].put(i & CHUNK_MASK, value);
+        }
+    }
+}
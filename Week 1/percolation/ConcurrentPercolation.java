@@ -0,0 +1,247 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Thread-safe percolation backend. Sites may be opened and
+ *  queried from many threads at once: open sites are an atomic bitmap, and
+ *  connectivity is tracked by lock-free union-find structures whose parent
+ *  arrays are only changed by compare-and-set.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class ConcurrentPercolation implements PercolationModel {
+    private final int n;
+    private final int top;
+    private final int bottom;
+
+    private final AtomicLongArray opened;
+    private final AtomicInteger countOpen = new AtomicInteger();
+
+    // sites plus a virtual top; answers isFull() without backwash
+    private final UnionFind full;
+    // sites plus a virtual top and bottom; answers percolates()
+    private final UnionFind spanning;
+    // connectivity only grows, so once true this stays true
+    private volatile boolean percolates;
+
+    // creates n-by-n grid, with all sites initially blocked
+    public ConcurrentPercolation(int n) {
+        if (n < 1 || n > 46340) {
+            throw new IllegalArgumentException("n must be between 1 and 46340");
+        }
+
+        this.n = n;
+        this.top = n * n;
+        this.bottom = n * n + 1;
+
+        opened = new AtomicLongArray((n * n + 63) >>> 6);
+        full = new UnionFind(n * n + 1);
+        spanning = new UnionFind(n * n + 2);
+    }
+
+    // opens the site (row, col) if it is not open already; when several
+    // threads open the same site, exactly one of them connects it
+    public void open(int row, int col) {
+        int ix = getIndex(row, col);
+        long bit = 1L << ix;
+        long old = opened.getAndAccumulate(ix >>> 6, bit, (a, b) -> a | b);
+        if ((old & bit) != 0) {
+            return;
+        }
+
+        countOpen.incrementAndGet();
+
+        if (row == 1) {
+            full.union(ix, top);
+            spanning.union(ix, top);
+        }
+
+        if (row == n) {
+            spanning.union(ix, bottom);
+        }
+
+        // the bit is set before the neighbours are read, so of two adjacent
+        // sites opened concurrently at least one sees the other as open
+        if (row > 1) {
+            connectIfOpen(ix, ix - n);
+        }
+
+        if (row < n) {
+            connectIfOpen(ix, ix + n);
+        }
+
+        if (col > 1) {
+            connectIfOpen(ix, ix - 1);
+        }
+
+        if (col < n) {
+            connectIfOpen(ix, ix + 1);
+        }
+    }
+
+    // is the site (row, col) open?
+    public boolean isOpen(int row, int col) {
+        return isOpen(getIndex(row, col));
+    }
+
+    // is the site (row, col) full?
+    public boolean isFull(int row, int col) {
+        int ix = getIndex(row, col);
+        return isOpen(ix) && full.connected(ix, top);
+    }
+
+    // returns the number of open sites
+    public int numberOfOpenSites() {
+        return countOpen.get();
+    }
+
+    // does the system percolate?
+    public boolean percolates() {
+        if (!percolates && spanning.connected(top, bottom)) {
+            percolates = true;
+        }
+        return percolates;
+    }
+
+    // test client (optional)
+    public static void main(String[] args) {
+        if (args == null || args.length != 2) {
+            throw new IllegalArgumentException("usage: java-algs4 ConcurrentPercolation 2000 8");
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int threads = Integer.parseInt(args[1]);
+
+        ConcurrentPercolation perc = new ConcurrentPercolation(n);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long seed = t;
+            workers[t] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                while (!perc.percolates()) {
+                    perc.open(random.nextInt(1, n + 1), random.nextInt(1, n + 1));
+                }
+            });
+            workers[t].start();
+        }
+
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        StdOut.printf("n = %d, open fraction = %.6f%n", n,
+                      perc.numberOfOpenSites() / ((double) n * n));
+    }
+
+    private boolean isOpen(int ix) {
+        return (opened.get(ix >>> 6) & (1L << ix)) != 0;
+    }
+
+    private void connectIfOpen(int ix, int neighbour) {
+        if (isOpen(neighbour)) {
+            full.union(ix, neighbour);
+            spanning.union(ix, neighbour);
+        }
+    }
+
+    private int getIndex(int row, int col) {
+        return n * (validate(row) - 1) + validate(col) - 1;
+    }
+
+    private int validate(int p) {
+        if (p < 1 || p > n) {
+            throw new IllegalArgumentException("index " + p + " is not between 1 and " + n);
+        }
+        return p;
+    }
+
+    // Lock-free union-find: roots are linked below the root of higher
+    // priority with a single compare-and-set, and find() halves paths with
+    // compare-and-set as well. Priorities are a fixed pseudo-random
+    // permutation of the indices, which keeps trees shallow in expectation
+    // and makes links acyclic without any locking.
+    private static final class UnionFind {
+        private final AtomicIntegerArray parent;
+
+        UnionFind(int size) {
+            parent = new AtomicIntegerArray(size);
+            for (int i = 0; i < size; i++) {
+                parent.set(i, i);
+            }
+        }
+
+        int find(int p) {
+            while (true) {
+                int up = parent.get(p);
+                if (up == p) {
+                    return p;
+                }
+
+                int grand = parent.get(up);
+                if (grand != up) {
+                    parent.compareAndSet(p, up, grand);
+                }
+                p = grand;
+            }
+        }
+
+        void union(int p, int q) {
+            while (true) {
+                p = find(p);
+                q = find(q);
+                if (p == q) {
+                    return;
+                }
+
+                if (priority(p) > priority(q)) {
+                    int tmp = p;
+                    p = q;
+                    q = tmp;
+                }
+
+                // fails only if p stopped being a root meanwhile; retry
+                if (parent.compareAndSet(p, p, q)) {
+                    return;
+                }
+            }
+        }
+
+        // linearizable: if p's root is still a root after both finds, p and
+        // q were in different sets at that moment
+        boolean connected(int p, int q) {
+            while (true) {
+                p = find(p);
+                q = find(q);
+                if (p == q) {
+                    return true;
+                }
+
+                if (parent.get(p) == p) {
+                    return false;
+                }
+            }
+        }
+
+        // MurmurHash3 finalizer, a bijection on int
+        private static int priority(int i) {
+            int h = i;
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
+        }
+    }
+}
@@ -4,15 +4,26 @@
  *  Last modified:     1/1/2019
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.WeightedQuickUnionUF;
+import java.util.Arrays;
+
+public class Percolation implements PercolationModel {
+    // bits of status[root]: does the component touch the top or the bottom row?
+    private static final byte TOP = 1;
+    private static final byte BOTTOM = 2;
 
-public class Percolation {
     private final int n;
-    private final int vLast;
 
-    private boolean[] grid;
+    // a site is open iff its stamp equals the current generation, so that
+    // reset() can block every site at once by starting a new generation
+    private final int[] opened;
+    private int generation = 1;
     private int countOpen = 0;
-    private final WeightedQuickUnionUF wuf;
+
+    // weighted quick-union; entries of blocked sites are stale and never read
+    private final int[] parent;
+    private final int[] size;
+    private final byte[] status;
+    private boolean percolates;
 
     // creates n-by-n grid, with all sites initially blocked
     public Percolation(int n) {
@@ -21,30 +32,77 @@ public class Percolation {
             throw new IllegalArgumentException("n must be positive integer");
         }
 
-        wuf = new WeightedQuickUnionUF(n * n + 2);
-        grid = new boolean[n * n + 2];
-        vLast = grid.length - 1;
+        opened = new int[n * n];
+        parent = new int[n * n];
+        size = new int[n * n];
+        status = new byte[n * n];
+    }
+
+    // blocks every site again in constant amortized time, so that one
+    // instance can be reused across trials without reallocating the grid
+    public void reset() {
+        countOpen = 0;
+        percolates = false;
+        generation++;
+
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(opened, 0);
+            generation = 1;
+        }
     }
 
     // opens the site (row, col) if it is not open already
     public void open(int row, int col) {
-        int ix = getIndex(row, col);
-        if (!isOpen(row, col)) {
-            grid[ix] = true;
-            countOpen++;
-            connectNeighbours(row, col);
+        openSite(getIndex(row, col));
+    }
+
+    // opens the site with row-major index site = n * (row - 1) + (col - 1)
+    // if it is not open already; a single range check replaces the row and
+    // column validation, for callers that already enumerate sites by index
+    public void openIndex(int site) {
+        if (site < 0 || site >= n * n) {
+            throw new IllegalArgumentException(
+                    "site " + site + " is not between 0 and " + (n * n - 1));
+        }
+
+        openSite(site);
+    }
+
+    // opens the sites with the given row-major indices, in order; the whole
+    // array is checked once up front, so a bad index opens nothing
+    public void openAll(int[] sites) {
+        validateSites(sites);
+
+        for (int site : sites) {
+            openSite(site);
         }
     }
 
+    // opens the sites with the given row-major indices, in order, until the
+    // system percolates; returns the length of that prefix of sites, or -1
+    // if the system does not percolate after opening all of them
+    public int openUntilPercolates(int[] sites) {
+        validateSites(sites);
+
+        for (int i = 0; i < sites.length; i++) {
+            if (percolates) {
+                return i;
+            }
+            openSite(sites[i]);
+        }
+
+        return percolates ? sites.length : -1;
+    }
+
     // is the site (row, col) open?
     public boolean isOpen(int row, int col) {
         int ix = getIndex(row, col);
-        return grid[ix];
+        return opened[ix] == generation;
     }
 
     // is the site (row, col) full?
     public boolean isFull(int row, int col) {
-        return wuf.find(getIndex(row, col)) == wuf.find(0);
+        return isOpen(row, col) && (status[find(getIndex(row, col))] & TOP) != 0;
     }
 
     // returns the number of open sites
@@ -54,17 +112,12 @@ public class Percolation {
 
     // does the system percolate?
     public boolean percolates() {
-        if (wuf.find(0) == wuf.find(vLast))
-            return true;
-
-        for (int b = 1; b <= n; b++) {
-            int ix = getIndex(n, b);
-            if (isOpen(n, b) && wuf.find(0) == wuf.find(ix)) {
-                wuf.union(ix, vLast);
-                return true;
-            }
-        }
-        return false;
+        return percolates;
+    }
+
+    // number of sites in the open cluster that contains the given open site
+    int clusterSize(int site) {
+        return size[find(site)];
     }
 
     // test client (optional)
@@ -81,26 +134,105 @@ public class Percolation {
         perc.open(row, col);
     }
 
-    private void connectNeighbours(int row, int col) {
-        for (int y = -1; y <= 1; y++) {
-            for (int x = -1; x <= 1; x++) {
-                if (Math.abs(x + y) == 1) {
-                    int x1 = row + x;
-                    int y1 = col + y;
-                    if (x1 >= 1 && x1 <= n && y1 >= 1 && y1 <= n && isOpen(x1, y1)) {
-                        wuf.union(getIndex(row, col), getIndex(x1, y1));
-                    }
-                }
-            }
+    private void openSite(int ix) {
+        if (opened[ix] != generation) {
+            opened[ix] = generation;
+            parent[ix] = ix;
+            size[ix] = 1;
+            status[ix] = edges(ix);
+            countOpen++;
+            connectNeighbours(ix);
+        }
+    }
+
+    // TOP and BOTTOM bits for a single site, merged into roots by union()
+    private byte edges(int ix) {
+        byte edges = 0;
+        if (ix < n) {
+            edges |= TOP;
+        }
+
+        if (ix >= n * n - n) {
+            edges |= BOTTOM;
+        }
+
+        if (edges == (TOP | BOTTOM)) {
+            percolates = true;
+        }
+        return edges;
+    }
+
+    private void connectNeighbours(int ix) {
+        int col = ix % n;
+
+        if (ix >= n) {
+            connectIfOpen(ix, ix - n);
+        }
+
+        if (ix < n * n - n) {
+            connectIfOpen(ix, ix + n);
+        }
+
+        if (col > 0) {
+            connectIfOpen(ix, ix - 1);
+        }
+
+        if (col < n - 1) {
+            connectIfOpen(ix, ix + 1);
         }
+    }
 
-        if (row == 1) {
-            wuf.union(getIndex(row, col), 0);
+    private void connectIfOpen(int ix, int neighbour) {
+        if (opened[neighbour] == generation) {
+            union(ix, neighbour);
+        }
+    }
+
+    private int find(int p) {
+        while (p != parent[p]) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private void union(int p, int q) {
+        int rootP = find(p);
+        int rootQ = find(q);
+        if (rootP == rootQ)
+            return;
+
+        if (size[rootP] < size[rootQ]) {
+            int tmp = rootP;
+            rootP = rootQ;
+            rootQ = tmp;
+        }
+
+        parent[rootQ] = rootP;
+        size[rootP] += size[rootQ];
+        status[rootP] |= status[rootQ];
+
+        if (status[rootP] == (TOP | BOTTOM)) {
+            percolates = true;
+        }
+    }
+
+    private void validateSites(int[] sites) {
+        if (sites == null) {
+            throw new IllegalArgumentException("sites is null");
+        }
+
+        int last = n * n - 1;
+        for (int site : sites) {
+            if (site < 0 || site > last) {
+                throw new IllegalArgumentException(
+                        "site " + site + " is not between 0 and " + last);
+            }
         }
     }
 
     private int getIndex(int row, int col) {
-        return n * (validate(row) - 1) + validate(col);
+        return n * (validate(row) - 1) + validate(col) - 1;
     }
 
     private int validate(int p) {
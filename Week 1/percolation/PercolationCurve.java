@@ -0,0 +1,309 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Newman-Ziff estimator of the percolation curve. Each trial
+ *  opens all n^2 sites once, in random order, and records for every number of
+ *  open sites k whether the system percolates and how large the spanning
+ *  cluster is. Convolving these microcanonical averages with the binomial
+ *  distribution gives the percolation probability and spanning cluster
+ *  density for any site vacancy probability p from the same set of trials.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+
+public class PercolationCurve {
+    // binomial weights below this fraction of the peak weight are ignored
+    private static final double NEGLIGIBLE_WEIGHT = 1e-16;
+    // workers add to spanningSites one block of this many counts at a time
+    private static final int BLOCK = 1 << 12;
+
+    private final int sites;
+    private final int trials;
+
+    // after k sites are open: number of trials that percolate, and the total
+    // number of sites in their spanning clusters; integer sums keep the
+    // result independent of the order in which workers are merged
+    private final long[] spanningTrials;
+    private final long[] spanningSites;
+
+    // perform independent sweeps on an n-by-n grid
+    public PercolationCurve(int n, int trials) {
+        this(n, trials, new SplittableRandom(), Runtime.getRuntime().availableProcessors());
+    }
+
+    // perform independent sweeps on an n-by-n grid using up to the given
+    // number of threads; the results depend only on seed
+    public PercolationCurve(int n, int trials, long seed, int threads) {
+        this(n, trials, new SplittableRandom(seed), threads);
+    }
+
+    // same as above, the t-th trial using the t-th generator split off random
+    public PercolationCurve(int n, int trials, SplittableGenerator random, int threads) {
+        if (random == null) {
+            throw new IllegalArgumentException("random is null");
+        }
+
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be a positive integer");
+        }
+
+        if (trials <= 0) {
+            throw new IllegalArgumentException("trials must be a positive integer");
+        }
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be a positive integer");
+        }
+
+        this.sites = n * n;
+        this.trials = trials;
+
+        spanningTrials = new long[sites + 1];
+        spanningSites = new long[sites + 1];
+
+        // per trial, the number of open sites at which it first percolates
+        int[] firstSpanning = new int[trials];
+        // block b of spanningSites is only added to while holding blockLocks[b]
+        Object[] blockLocks = new Object[sites / BLOCK + 1];
+        for (int b = 0; b < blockLocks.length; b++) {
+            blockLocks[b] = new Object();
+        }
+
+        RandomGenerator[] generators = new RandomGenerator[trials];
+        for (int t = 0; t < trials; t++) {
+            generators[t] = random.split();
+        }
+
+        int workers = Math.min(threads, trials);
+        AtomicInteger nextTrial = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workers);
+        for (int i = 0; i < workers; i++) {
+            tasks.add(new Worker(n, generators, nextTrial, firstSpanning, blockLocks));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks)) {
+                f.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running trials", e);
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("trial failed", e.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        // a trial percolates with k open sites from its first spanning k on
+        for (int t = 0; t < trials; t++) {
+            spanningTrials[firstSpanning[t]]++;
+        }
+
+        for (int k = 1; k <= sites; k++) {
+            spanningTrials[k] += spanningTrials[k - 1];
+        }
+    }
+
+    // probability that the system percolates with exactly k open sites
+    public double percolationProbability(int k) {
+        validateCount(k);
+        return spanningTrials[k] / (double) trials;
+    }
+
+    // probability that the system percolates when each site is open with
+    // probability p
+    public double percolationProbability(double p) {
+        return convolve(spanningTrials, trials, p);
+    }
+
+    // expected fraction of all sites that belong to a spanning cluster when
+    // each site is open with probability p (zero for trials that do not span)
+    public double spanningClusterDensity(double p) {
+        return convolve(spanningSites, (double) trials * sites, p);
+    }
+
+    // sample mean of percolation threshold, as in PercolationStats
+    public double mean() {
+        double mean = 0.0;
+        for (int k = 1; k <= sites; k++) {
+            mean += (spanningTrials[k] - spanningTrials[k - 1]) * (double) k;
+        }
+        return mean / ((double) trials * sites);
+    }
+
+    // test client (see below)
+    public static void main(String[] args) {
+        if (args == null || (args.length != 2 && args.length != 4)) {
+            throw new IllegalArgumentException(
+                    "usage: java-algs4 PercolationCurve 200 100 [seed threads]");
+        }
+
+        int n = Integer.parseInt(args[0]);
+        int trials = Integer.parseInt(args[1]);
+
+        PercolationCurve curve = args.length == 2
+                                 ? new PercolationCurve(n, trials)
+                                 : new PercolationCurve(n, trials, Long.parseLong(args[2]),
+                                                        Integer.parseInt(args[3]));
+
+        StdOut.printf("mean threshold\t= %.10f%n", curve.mean());
+        StdOut.println("p\tP(p)\t\tspanning density");
+        for (int i = 50; i <= 70; i++) {
+            double p = i / 100.0;
+            StdOut.printf("%.2f\t%.6f\t%.6f%n", p,
+                          curve.percolationProbability(p),
+                          curve.spanningClusterDensity(p));
+        }
+    }
+
+    // sum over k of C(sites, k) p^k (1 - p)^(sites - k) * totals[k] / scale;
+    // weights are built by ratios outwards from k = sites * p, where the
+    // binomial peaks, and relative to it, so nothing overflows
+    private double convolve(long[] totals, double scale, double p) {
+        if (Double.isNaN(p) || p < 0.0 || p > 1.0) {
+            throw new IllegalArgumentException("p must be between 0 and 1");
+        }
+
+        if (p == 0.0) {
+            return totals[0] / scale;
+        }
+
+        if (p == 1.0) {
+            return totals[sites] / scale;
+        }
+
+        int peak = (int) (sites * p);
+        double odds = p / (1.0 - p);
+        double sum = 0.0;
+        double norm = 0.0;
+
+        double weight = 1.0;
+        for (int k = peak; k <= sites && weight > NEGLIGIBLE_WEIGHT; k++) {
+            sum += weight * totals[k];
+            norm += weight;
+            weight *= (sites - k) / (k + 1.0) * odds;
+        }
+
+        weight = peak / (sites - peak + 1.0) / odds;
+        for (int k = peak - 1; k >= 0 && weight > NEGLIGIBLE_WEIGHT; k--) {
+            sum += weight * totals[k];
+            norm += weight;
+            weight *= k / (sites - k + 1.0) / odds;
+        }
+
+        return sum / norm / scale;
+    }
+
+    private void validateCount(int k) {
+        if (k < 0 || k > sites) {
+            throw new IllegalArgumentException("k " + k + " is not between 0 and " + sites);
+        }
+    }
+
+    // claims trials one at a time; records where each first percolates and
+    // adds its spanning cluster sizes to spanningSites through a window of
+    // one block, so its memory does not grow with the grid
+    private final class Worker implements Callable<Void> {
+        private final int n;
+        private final RandomGenerator[] generators;
+        private final AtomicInteger nextTrial;
+        private final int[] firstSpanning;
+        private final Object[] blockLocks;
+        // counts for spanningSites[windowStart .. windowStart + BLOCK)
+        private final long[] window = new long[BLOCK];
+        private int windowStart = -1;
+
+        Worker(int n, RandomGenerator[] generators, AtomicInteger nextTrial,
+               int[] firstSpanning, Object[] blockLocks) {
+            this.n = n;
+            this.generators = generators;
+            this.nextTrial = nextTrial;
+            this.firstSpanning = firstSpanning;
+            this.blockLocks = blockLocks;
+        }
+
+        public Void call() {
+            Percolation perc = new Percolation(n);
+            int[] order = new int[sites];
+
+            for (int t = nextTrial.getAndIncrement(); t < trials; t = nextTrial.getAndIncrement()) {
+                perc.reset();
+                RandomGenerator random = generators[t];
+                generators[t] = null;
+                firstSpanning[t] = sweep(perc, order, random);
+                flush();
+            }
+
+            return null;
+        }
+
+        // opens every site in the order of a fresh Fisher-Yates permutation
+        // and returns the number of open sites at which the system first
+        // percolates; the site that makes it percolate stays in the spanning
+        // cluster, so its cluster size is the spanning cluster size
+        private int sweep(Percolation perc, int[] order, RandomGenerator random) {
+            for (int i = 0; i < sites; i++) {
+                order[i] = i;
+            }
+
+            int spanningSite = -1;
+            int first = sites;
+            for (int k = 1; k <= sites; k++) {
+                int j = random.nextInt(k - 1, sites);
+                int site = order[j];
+                order[j] = order[k - 1];
+                order[k - 1] = site;
+
+                perc.openIndex(site);
+
+                if (spanningSite < 0 && perc.percolates()) {
+                    spanningSite = site;
+                    first = k;
+                }
+
+                if (spanningSite >= 0) {
+                    if (windowStart < 0 || k >= windowStart + BLOCK) {
+                        flush();
+                        windowStart = k - k % BLOCK;
+                    }
+                    window[k - windowStart] += perc.clusterSize(spanningSite);
+                }
+            }
+
+            return first;
+        }
+
+        // adds the window to spanningSites and empties it
+        private void flush() {
+            if (windowStart < 0) {
+                return;
+            }
+
+            int length = Math.min(BLOCK, sites + 1 - windowStart);
+            synchronized (blockLocks[windowStart / BLOCK]) {
+                for (int i = 0; i < length; i++) {
+                    spanningSites[windowStart + i] += window[i];
+                }
+            }
+            Arrays.fill(window, 0, length, 0L);
+            windowStart = -1;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Common API of the percolation backends, so that a caller can
+ *  pick the array-based Percolation or the memory-compact CompactPercolation
+ *  without changing the code that opens and queries sites.
+ **************************************************************************** */
+
+public interface PercolationModel {
+
+    // opens the site (row, col) if it is not open already
+    void open(int row, int col);
+
+    // is the site (row, col) open?
+    boolean isOpen(int row, int col);
+
+    // is the site (row, col) full?
+    boolean isFull(int row, int col);
+
+    // returns the number of open sites
+    int numberOfOpenSites();
+
+    // does the system percolate?
+    boolean percolates();
+}
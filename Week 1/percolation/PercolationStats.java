@@ -4,54 +4,155 @@
  *  Last modified:     1/1/2019
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.StdRandom;
 import edu.princeton.cs.algs4.StdStats;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
 
 public class PercolationStats {
 
     private static final double CONFIDENCE_95 = 1.96d;
-    private final double[] openSitesWhenPercolated;
+    // trials run between two checks of the adaptive stopping rule
+    private static final int BATCH_SIZE = 64;
     private final int trials;
+    private final double mean;
+    private final double stddev;
+
+    // how a trial picks the next site to open
+    public enum Sampling {
+        // draw (row, col) uniformly and skip sites that are already open
+        REJECTION,
+        // open sites in the order of a random permutation of all n^2 sites
+        SHUFFLED
+    }
 
     // perform independent trials on an n-by-n grid
     public PercolationStats(int n, int trials) {
-        if (n <= 0) {
-            throw new IllegalArgumentException("n must be a positive integer");
-        }
+        this(n, trials, new SplittableRandom(), Runtime.getRuntime().availableProcessors(),
+             Sampling.REJECTION);
+    }
+
+    // perform independent trials on an n-by-n grid using up to the given number
+    // of threads; every trial draws from its own generator, split in trial
+    // order off one seeded with seed, so the results do not depend on the
+    // number of threads
+    public PercolationStats(int n, int trials, long seed, int threads) {
+        this(n, trials, seed, threads, Sampling.REJECTION);
+    }
+
+    // same as above, opening sites as chosen by the given sampling mode
+    public PercolationStats(int n, int trials, long seed, int threads, Sampling sampling) {
+        this(n, trials, new SplittableRandom(seed), threads, sampling);
+    }
+
+    // same as above, the t-th trial using the t-th generator split off random
+    public PercolationStats(int n, int trials, SplittableGenerator random, int threads,
+                            Sampling sampling) {
+        validate(n, random, threads, sampling);
 
         if (trials <= 0) {
             throw new IllegalArgumentException("trials must be a positive integer");
         }
 
+        double[] openSitesWhenPercolated = new double[trials];
+
+        TrialRunner runner = new TrialRunner(n, Math.min(threads, trials), sampling, trials);
+        try {
+            runner.run(random, openSitesWhenPercolated, trials);
+        }
+        finally {
+            runner.shutdown();
+        }
+
         this.trials = trials;
+        this.mean = StdStats.mean(openSitesWhenPercolated);
+        this.stddev = StdStats.stddev(openSitesWhenPercolated);
+    }
 
-        openSitesWhenPercolated = new double[trials];
+    private PercolationStats(int trials, double mean, double stddev) {
+        this.trials = trials;
+        this.mean = mean;
+        this.stddev = stddev;
+    }
 
-        for (int t = 0; t < trials; t++) {
-            Percolation perc = new Percolation(n);
+    // perform trials on an n-by-n grid until the 95% confidence interval is
+    // at most halfWidth wide on either side of the mean, or until timeLimit
+    // milliseconds have passed; mean and variance are updated online
+    // (Welford), so memory does not grow with the number of trials. Trials
+    // are run and folded in batches of fixed size, so for a given seed the
+    // stopping point does not depend on the number of threads
+    public static PercolationStats adaptive(int n, double halfWidth, long timeLimit,
+                                            long seed, int threads, Sampling sampling) {
+        return adaptive(n, halfWidth, timeLimit, new SplittableRandom(seed), threads, sampling);
+    }
 
-            while (!perc.percolates()) {
-                int row = StdRandom.uniform(1, n + 1);
-                int col = StdRandom.uniform(1, n + 1);
+    // same as above, the t-th trial using the t-th generator split off random
+    public static PercolationStats adaptive(int n, double halfWidth, long timeLimit,
+                                            SplittableGenerator random, int threads,
+                                            Sampling sampling) {
+        validate(n, random, threads, sampling);
 
-                if (!perc.isOpen(row, col)) {
-                    perc.open(row, col);
-                }
-            }
+        if (!(halfWidth > 0.0)) {
+            throw new IllegalArgumentException("halfWidth must be positive");
+        }
+
+        if (timeLimit <= 0) {
+            throw new IllegalArgumentException("timeLimit must be positive");
+        }
 
-            openSitesWhenPercolated[t] = perc.numberOfOpenSites() / (double) (n * n);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimit);
+        double[] batch = new double[BATCH_SIZE];
+        int count = 0;
+        double mean = 0.0;
+        double m2 = 0.0;
+
+        TrialRunner runner = new TrialRunner(n, Math.min(threads, BATCH_SIZE), sampling,
+                                             BATCH_SIZE);
+        try {
+            do {
+                int size = Math.min(BATCH_SIZE, Integer.MAX_VALUE - count);
+                runner.run(random, batch, size);
+
+                for (int i = 0; i < size; i++) {
+                    count++;
+                    double delta = batch[i] - mean;
+                    mean += delta / count;
+                    m2 += delta * (batch[i] - mean);
+                }
+            } while (count < Integer.MAX_VALUE
+                    && CONFIDENCE_95 * Math.sqrt(m2 / (count - 1) / count) > halfWidth
+                    && System.nanoTime() - deadline < 0);
         }
+        finally {
+            runner.shutdown();
+        }
+
+        return new PercolationStats(count, mean, Math.sqrt(m2 / (count - 1)));
+    }
+
+    // number of trials performed
+    public int trials() {
+        return trials;
     }
 
     // sample mean of percolation threshold
     public double mean() {
-        return StdStats.mean(openSitesWhenPercolated);
+        return mean;
     }
 
     // sample standard deviation of percolation threshold
     public double stddev() {
-        return StdStats.stddev(openSitesWhenPercolated);
+        return stddev;
     }
 
     // low endpoint of 95% confidence interval
@@ -64,21 +165,183 @@ public class PercolationStats {
         return mean() + ((CONFIDENCE_95 * stddev()) / Math.sqrt(trials));
     }
 
-    // test client (see below)
+    // test client (see below); a fractional second argument is the target
+    // half-width of an adaptive run limited to one minute
     public static void main(String[] args) {
-        if (args == null || args.length != 2) {
-            throw new IllegalArgumentException("usage: java-algs4 PercolationStats 200 100");
+        if (args == null || args.length < 2 || args.length > 5) {
+            throw new IllegalArgumentException(
+                    "usage: java-algs4 PercolationStats 200 100|0.001 [seed] [threads] [sampling]");
         }
 
         int n = Integer.parseInt(args[0]);
-        int trials = Integer.parseInt(args[1]);
 
-        PercolationStats ps = new PercolationStats(n, trials);
+        PercolationStats ps;
+        if (args[1].contains(".")) {
+            long seed = args.length >= 3 ? Long.parseLong(args[2]) : new SplittableRandom().nextLong();
+            int threads = args.length >= 4
+                          ? Integer.parseInt(args[3])
+                          : Runtime.getRuntime().availableProcessors();
+            Sampling sampling = args.length == 5
+                                ? Sampling.valueOf(args[4].toUpperCase())
+                                : Sampling.SHUFFLED;
+            ps = adaptive(n, Double.parseDouble(args[1]), 60000, seed, threads, sampling);
+        }
+        else if (args.length == 2) {
+            int trials = Integer.parseInt(args[1]);
+            ps = new PercolationStats(n, trials);
+        }
+        else {
+            int trials = Integer.parseInt(args[1]);
+            long seed = Long.parseLong(args[2]);
+            int threads = args.length >= 4
+                          ? Integer.parseInt(args[3])
+                          : Runtime.getRuntime().availableProcessors();
+            Sampling sampling = args.length == 5
+                                ? Sampling.valueOf(args[4].toUpperCase())
+                                : Sampling.REJECTION;
+            ps = new PercolationStats(n, trials, seed, threads, sampling);
+        }
 
+        System.out.printf("trials\t\t\t\t= %d%n", ps.trials());
         System.out.printf("mean\t\t\t\t= %.10f%n", ps.mean());
         System.out.printf("stddev\t\t\t= %.10f%n", ps.stddev());
         System.out.printf("95%% confidence interval\t=[%.10f, %.10f]%n",
                           ps.confidenceLo(),
                           ps.confidenceHi());
     }
+
+    private static void validate(int n, RandomGenerator random, int threads,
+                                 Sampling sampling) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("n must be a positive integer");
+        }
+
+        if (random == null) {
+            throw new IllegalArgumentException("random is null");
+        }
+
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be a positive integer");
+        }
+
+        if (sampling == null) {
+            throw new IllegalArgumentException("sampling is null");
+        }
+    }
+
+    private static double runTrial(Percolation perc, int n, RandomGenerator random) {
+        while (!perc.percolates()) {
+            int row = random.nextInt(1, n + 1);
+            int col = random.nextInt(1, n + 1);
+
+            if (!perc.isOpen(row, col)) {
+                perc.open(row, col);
+            }
+        }
+
+        return perc.numberOfOpenSites() / (double) (n * n);
+    }
+
+    // Fisher-Yates shuffle of order performed lazily, one swap per opened
+    // site, so the trial stops drawing random numbers once it percolates;
+    // order restarts from the identity so the trial depends only on random
+    private static double runShuffledTrial(Percolation perc, int[] order,
+                                           RandomGenerator random) {
+        int sites = order.length;
+        for (int i = 0; i < sites; i++) {
+            order[i] = i;
+        }
+
+        for (int i = 0; !perc.percolates(); i++) {
+            int j = random.nextInt(i, sites);
+            int site = order[j];
+            order[j] = order[i];
+            order[i] = site;
+
+            perc.openIndex(site);
+        }
+
+        return perc.numberOfOpenSites() / (double) sites;
+    }
+
+    // a fixed pool of workers, each owning a recycled grid, that runs ranges
+    // of consecutive trials
+    private static final class TrialRunner {
+        private final int n;
+        private final Sampling sampling;
+        private final ExecutorService pool;
+        private final List<Worker> workers;
+
+        // the batch currently being run; written before the workers are
+        // invoked, which orders it before their reads
+        private final RandomGenerator[] generators;
+        private int count;
+        private double[] results;
+        private final AtomicInteger next = new AtomicInteger();
+
+        TrialRunner(int n, int threads, Sampling sampling, int capacity) {
+            this.n = n;
+            this.sampling = sampling;
+            this.generators = new RandomGenerator[capacity];
+
+            workers = new ArrayList<Worker>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(new Worker());
+            }
+            pool = Executors.newFixedThreadPool(threads);
+        }
+
+        // runs the next count trials into results[0 .. count), splitting their
+        // generators off random in trial order on the calling thread
+        void run(SplittableGenerator random, double[] results, int count) {
+            for (int i = 0; i < count; i++) {
+                generators[i] = random.split();
+            }
+
+            this.count = count;
+            this.results = results;
+            next.set(0);
+
+            try {
+                for (Future<Void> f : pool.invokeAll(workers)) {
+                    f.get();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while running trials", e);
+            }
+            catch (ExecutionException e) {
+                throw new IllegalStateException("trial failed", e.getCause());
+            }
+        }
+
+        void shutdown() {
+            pool.shutdown();
+        }
+
+        // claims trials one at a time and runs them on its own recycled grid
+        private final class Worker implements Callable<Void> {
+            private Percolation perc;
+            private int[] order;
+
+            public Void call() {
+                if (perc == null) {
+                    perc = new Percolation(n);
+                    order = sampling == Sampling.SHUFFLED ? new int[n * n] : null;
+                }
+
+                for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                    perc.reset();
+                    RandomGenerator random = generators[i];
+                    generators[i] = null;
+                    results[i] = order == null
+                                 ? runTrial(perc, n, random)
+                                 : runShuffledTrial(perc, order, random);
+                }
+
+                return null;
+            }
+        }
+    }
 }
@@ -0,0 +1,324 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Ancestor labeling of a DAG. The label of a vertex lists all
+ *  of its ancestors, itself included, with the length of the shortest
+ *  directed path to each, sorted by ancestor. Labels are built once in
+ *  topological order, parents first, by merging the labels of the parents.
+ *  When vertices or edges are added, only the labels of the vertices whose
+ *  ancestors changed are merged again; the rest are copied. A shortest ancestral path between two vertices then comes from a single
+ *  merge of their labels, and between two vertex sets from one pass over
+ *  the labels of each set, with no graph search. It pays off on digraphs
+ *  like WordNet, where every vertex has few ancestors.
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+public class AncestorIndex {
+    // ancestors of v are labelAncestors[labelOffsets[v] .. labelOffsets[v + 1]),
+    // in increasing order, at distances labelDistances[...]
+    private final int[] labelOffsets;
+    private final int[] labelAncestors;
+    private final int[] labelDistances;
+    private final long buildMillis;
+
+    // scratch borrowed by each set query
+    private final ScratchPool<Scratch> scratches;
+
+    // builds the labels of G, which must be acyclic
+    AncestorIndex(CsrDigraph G) {
+        this(G, null, all(G.V()));
+    }
+
+    // the labels of G, which is the digraph of old with vertices or edges
+    // added; changed[v] marks the vertices whose ancestors differ in G. The
+    // other labels are still valid and are copied, so only the changed
+    // vertices and the new ones are merged again
+    AncestorIndex extend(CsrDigraph G, boolean[] changed) {
+        boolean[] recompute = Arrays.copyOf(changed, G.V());
+        Arrays.fill(recompute, changed.length, G.V(), true);
+        return new AncestorIndex(G, this, recompute);
+    }
+
+    // labels of G, merged for the vertices marked in recompute and copied
+    // from old for the others
+    private AncestorIndex(CsrDigraph G, AncestorIndex old, boolean[] recompute) {
+        long start = System.nanoTime();
+        int V = G.V();
+        int[] offsets = G.offsets();
+        int[] targets = G.targets();
+        int[] order = topologicalOrder(G, recompute);
+
+        labelOffsets = new int[V + 1];
+        int[] ancestors = new int[Math.max(16, 4 * order.length)];
+        int[] distances = new int[ancestors.length];
+
+        // the label being built, collected through a stamped scratch array
+        int[] stamp = new int[V];
+        int[] best = new int[V];
+        int[] found = new int[16];
+
+        // recomputed labels are written in topological order, so first record
+        // where each one starts and fill in labelOffsets afterwards
+        int[] written = new int[V];
+        int[] length = new int[V];
+        int size = 0;
+
+        for (int i = 0; i < order.length; i++) {
+            int v = order[i];
+            int generation = i + 1;
+            int count = 0;
+
+            stamp[v] = generation;
+            best[v] = 0;
+            found[count++] = v;
+
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int parent = targets[k];
+                // the parent's label, recomputed above or kept from old
+                int[] parentAncestors = ancestors;
+                int[] parentDistances = distances;
+                int e = written[parent];
+                int end = e + length[parent];
+                if (!recompute[parent]) {
+                    parentAncestors = old.labelAncestors;
+                    parentDistances = old.labelDistances;
+                    e = old.labelOffsets[parent];
+                    end = old.labelOffsets[parent + 1];
+                }
+
+                for (; e < end; e++) {
+                    int x = parentAncestors[e];
+                    int dist = parentDistances[e] + 1;
+                    if (stamp[x] != generation) {
+                        stamp[x] = generation;
+                        best[x] = dist;
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = x;
+                    }
+                    else if (dist < best[x]) {
+                        best[x] = dist;
+                    }
+                }
+            }
+
+            Arrays.sort(found, 0, count);
+            if (ancestors.length - size < count) {
+                long capacity = Math.max(2L * ancestors.length, (long) size + count);
+                if (capacity > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("ancestor labels too large");
+                }
+                ancestors = Arrays.copyOf(ancestors, (int) capacity);
+                distances = Arrays.copyOf(distances, (int) capacity);
+            }
+
+            written[v] = size;
+            length[v] = count;
+            for (int j = 0; j < count; j++) {
+                ancestors[size] = found[j];
+                distances[size++] = best[found[j]];
+            }
+        }
+
+        // lay the labels out again in vertex order, old ones included
+        long total = 0;
+        for (int v = 0; v < V; v++) {
+            total += recompute[v] ? length[v] : old.labelOffsets[v + 1] - old.labelOffsets[v];
+        }
+        if (total > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("ancestor labels too large");
+        }
+
+        labelAncestors = new int[(int) total];
+        labelDistances = new int[(int) total];
+        for (int v = 0; v < V; v++) {
+            int[] fromAncestors = ancestors;
+            int[] fromDistances = distances;
+            int from = written[v];
+            int count = length[v];
+            if (!recompute[v]) {
+                fromAncestors = old.labelAncestors;
+                fromDistances = old.labelDistances;
+                from = old.labelOffsets[v];
+                count = old.labelOffsets[v + 1] - from;
+            }
+
+            labelOffsets[v + 1] = labelOffsets[v] + count;
+            System.arraycopy(fromAncestors, from, labelAncestors, labelOffsets[v], count);
+            System.arraycopy(fromDistances, from, labelDistances, labelOffsets[v], count);
+        }
+
+        scratches = new ScratchPool<Scratch>(() -> new Scratch(V));
+        buildMillis = (System.nanoTime() - start) / 1000000;
+    }
+
+    // total number of (ancestor, distance) entries over all labels
+    public int size() {
+        return labelAncestors.length;
+    }
+
+    // approximate heap footprint of the labels, in bytes
+    public long memoryBytes() {
+        return 4L * (labelOffsets.length + labelAncestors.length + labelDistances.length);
+    }
+
+    // time taken to build the labels, in milliseconds
+    public long buildMillis() {
+        return buildMillis;
+    }
+
+    // (length, ancestor) of a shortest ancestral path between v and w,
+    // packed as by SAPCache; (-1, -1) if they have no common ancestor
+    long pair(int v, int w) {
+        int bestLength = Integer.MAX_VALUE;
+        int bestAncestor = -1;
+
+        int i = labelOffsets[v];
+        int iEnd = labelOffsets[v + 1];
+        int j = labelOffsets[w];
+        int jEnd = labelOffsets[w + 1];
+        while (i < iEnd && j < jEnd) {
+            int a = labelAncestors[i];
+            int b = labelAncestors[j];
+            if (a < b) {
+                i++;
+            }
+            else if (a > b) {
+                j++;
+            }
+            else {
+                int length = labelDistances[i++] + labelDistances[j++];
+                if (length < bestLength) {
+                    bestLength = length;
+                    bestAncestor = a;
+                }
+            }
+        }
+
+        return bestAncestor < 0 ? SAPCache.pack(-1, -1) : SAPCache.pack(bestLength, bestAncestor);
+    }
+
+    // same as above, between any vertex of v[vFrom .. vTo) and any vertex of
+    // w[wFrom .. wTo)
+    long sets(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+        Scratch scratch = scratches.borrow();
+        try {
+            return sets(v, vFrom, vTo, w, wFrom, wTo, scratch);
+        }
+        finally {
+            scratches.release(scratch);
+        }
+    }
+
+    private long sets(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo,
+                      Scratch scratch) {
+        int generation = scratch.start();
+        int[] stamp = scratch.stamp;
+        int[] best = scratch.best;
+
+        for (int i = vFrom; i < vTo; i++) {
+            int v1 = v[i];
+            for (int e = labelOffsets[v1]; e < labelOffsets[v1 + 1]; e++) {
+                int x = labelAncestors[e];
+                if (stamp[x] != generation || labelDistances[e] < best[x]) {
+                    stamp[x] = generation;
+                    best[x] = labelDistances[e];
+                }
+            }
+        }
+
+        int bestLength = Integer.MAX_VALUE;
+        int bestAncestor = -1;
+        for (int i = wFrom; i < wTo; i++) {
+            int w1 = w[i];
+            for (int e = labelOffsets[w1]; e < labelOffsets[w1 + 1]; e++) {
+                int x = labelAncestors[e];
+                if (stamp[x] == generation && best[x] + labelDistances[e] < bestLength) {
+                    bestLength = best[x] + labelDistances[e];
+                    bestAncestor = x;
+                }
+            }
+        }
+
+        return bestAncestor < 0 ? SAPCache.pack(-1, -1) : SAPCache.pack(bestLength, bestAncestor);
+    }
+
+    private static boolean[] all(int V) {
+        boolean[] marked = new boolean[V];
+        Arrays.fill(marked, true);
+        return marked;
+    }
+
+    // the vertices marked in recompute, ordered so that every one comes
+    // after all of the marked vertices its edges point to: the postorder of
+    // a depth-first search along the edges, restricted to marked vertices
+    private static int[] topologicalOrder(CsrDigraph G, boolean[] recompute) {
+        int V = G.V();
+        int[] offsets = G.offsets();
+        int[] targets = G.targets();
+
+        // 0 not yet seen, 1 on the stack, 2 done
+        byte[] state = new byte[V];
+        int[] stack = new int[V];
+        // next edge to follow of the vertex at the same stack position
+        int[] edge = new int[V];
+        int[] order = new int[V];
+        int count = 0;
+
+        for (int root = 0; root < V; root++) {
+            if (!recompute[root] || state[root] != 0) {
+                continue;
+            }
+
+            int top = 0;
+            stack[0] = root;
+            edge[0] = offsets[root];
+            state[root] = 1;
+            while (top >= 0) {
+                int v = stack[top];
+                if (edge[top] == offsets[v + 1]) {
+                    state[v] = 2;
+                    order[count++] = v;
+                    top--;
+                    continue;
+                }
+
+                int w = targets[edge[top]++];
+                if (!recompute[w] || state[w] == 2) {
+                    continue;
+                }
+
+                if (state[w] == 1) {
+                    throw new IllegalArgumentException("cannot index a digraph with a cycle");
+                }
+
+                state[w] = 1;
+                stack[++top] = w;
+                edge[top] = offsets[w];
+            }
+        }
+
+        return Arrays.copyOf(order, count);
+    }
+
+    private static final class Scratch {
+        private final int[] stamp;
+        private final int[] best;
+        private int generation;
+
+        Scratch(int n) {
+            stamp = new int[n];
+            best = new int[n];
+        }
+
+        int start() {
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            return generation;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Immutable digraph in compressed sparse row form. The edges
+ *  leaving v are targets[offsets[v] .. offsets[v + 1]), in the order in
+ *  which they were given, so traversals scan plain int arrays instead of
+ *  following the linked nodes of a Bag.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Digraph;
+
+import java.util.Arrays;
+
+public class CsrDigraph {
+    private final int[] offsets;
+    private final int[] targets;
+
+    // copies G, keeping the order in which G.adj() lists each vertex's edges
+    public CsrDigraph(Digraph G) {
+        if (G == null) {
+            throw new IllegalArgumentException("called CsrDigraph() with null G");
+        }
+
+        offsets = new int[G.V() + 1];
+        targets = new int[G.E()];
+        for (int v = 0; v < G.V(); v++) {
+            int k = offsets[v];
+            for (int w : G.adj(v)) {
+                targets[k++] = w;
+            }
+            offsets[v + 1] = k;
+        }
+    }
+
+    // wraps the given arrays without copying; the caller must not modify them
+    CsrDigraph(int[] offsets, int[] targets) {
+        if (offsets == null || targets == null || offsets.length == 0
+                || offsets[0] != 0 || offsets[offsets.length - 1] != targets.length) {
+            throw new IllegalArgumentException("malformed offsets");
+        }
+
+        int V = offsets.length - 1;
+        for (int v = 0; v < V; v++) {
+            if (offsets[v] > offsets[v + 1]) {
+                throw new IllegalArgumentException("malformed offsets");
+            }
+        }
+
+        for (int w : targets) {
+            if (w < 0 || w >= V) {
+                throw new IllegalArgumentException("edge target out of range");
+            }
+        }
+
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    public int V() {
+        return offsets.length - 1;
+    }
+
+    public int E() {
+        return targets.length;
+    }
+
+    public int outdegree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    // the digraph with every edge reversed; the edges entering v are listed
+    // in increasing order of their source
+    public CsrDigraph reverse() {
+        int V = V();
+        int[] reverseOffsets = new int[V + 1];
+        for (int w : targets) {
+            reverseOffsets[w + 1]++;
+        }
+
+        for (int v = 0; v < V; v++) {
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+
+        int[] next = new int[V];
+        System.arraycopy(reverseOffsets, 0, next, 0, V);
+        int[] reverseTargets = new int[targets.length];
+        for (int v = 0; v < V; v++) {
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                reverseTargets[next[targets[k]]++] = v;
+            }
+        }
+
+        return new CsrDigraph(reverseOffsets, reverseTargets);
+    }
+
+    // a copy of this digraph with one more vertex, numbered V(), and no edges
+    CsrDigraph withVertex() {
+        int[] newOffsets = Arrays.copyOf(offsets, offsets.length + 1);
+        newOffsets[offsets.length] = targets.length;
+        return new CsrDigraph(newOffsets, targets);
+    }
+
+    // a copy of this digraph with the edge v->w added; it is listed first
+    // among the edges leaving v, as Digraph.addEdge() would list it
+    CsrDigraph withEdge(int v, int w) {
+        int[] newOffsets = new int[offsets.length];
+        for (int x = 0; x < offsets.length; x++) {
+            newOffsets[x] = x <= v ? offsets[x] : offsets[x] + 1;
+        }
+
+        int[] newTargets = new int[targets.length + 1];
+        int at = offsets[v];
+        System.arraycopy(targets, 0, newTargets, 0, at);
+        newTargets[at] = w;
+        System.arraycopy(targets, at, newTargets, at + 1, targets.length - at);
+        return new CsrDigraph(newOffsets, newTargets);
+    }
+
+    // is w reachable from v along directed paths
+    boolean reaches(int v, int w) {
+        if (v == w) {
+            return true;
+        }
+
+        boolean[] marked = new boolean[V()];
+        int[] queue = new int[V()];
+        int tail = 0;
+        marked[v] = true;
+        queue[tail++] = v;
+        for (int head = 0; head < tail; head++) {
+            int x = queue[head];
+            for (int k = offsets[x]; k < offsets[x + 1]; k++) {
+                int y = targets[k];
+                if (y == w) {
+                    return true;
+                }
+
+                if (!marked[y]) {
+                    marked[y] = true;
+                    queue[tail++] = y;
+                }
+            }
+        }
+        return false;
+    }
+
+    // the vertices reachable from v, v included
+    boolean[] reachable(int v) {
+        boolean[] marked = new boolean[V()];
+        int[] queue = new int[V()];
+        int tail = 0;
+        marked[v] = true;
+        queue[tail++] = v;
+        for (int head = 0; head < tail; head++) {
+            int x = queue[head];
+            for (int k = offsets[x]; k < offsets[x + 1]; k++) {
+                if (!marked[targets[k]]) {
+                    marked[targets[k]] = true;
+                    queue[tail++] = targets[k];
+                }
+            }
+        }
+        return marked;
+    }
+
+    // the arrays themselves, for traversals; callers must not modify them
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] targets() {
+        return targets;
+    }
+}
@@ -0,0 +1,103 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Histogram of latencies in nanoseconds with log-linear
+ *  buckets, in the style of HdrHistogram: every power of two is divided
+ *  into 32 equal buckets, so a value is known to within about 3% while
+ *  the whole range of a long fits in under 2,000 counters. Recording is a
+ *  single atomic increment and may be done from many threads at once.
+ **************************************************************************** */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // values below 2 * SUB_BUCKETS get a bucket each; above that, each power
+    // of two up to 2^62 gets SUB_BUCKETS buckets
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    // a copy of the counts recorded so far
+    public LatencyHistogram copy() {
+        LatencyHistogram copy = new LatencyHistogram();
+        for (int i = 0; i < BUCKETS; i++) {
+            copy.counts.set(i, counts.get(i));
+        }
+        return copy;
+    }
+
+    // records one latency; negative values count as 0
+    public void record(long nanos) {
+        counts.incrementAndGet(bucket(Math.max(0, nanos)));
+    }
+
+    // number of recorded latencies
+    public long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // the smallest bucket bound that at least percentile percent of the
+    // recorded latencies do not exceed, or 0 if none were recorded
+    public long percentile(double percentile) {
+        if (!(percentile >= 0.0 && percentile <= 100.0)) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highest(i);
+            }
+        }
+        return highest(BUCKETS - 1);
+    }
+
+    // count and the usual percentiles, in microseconds
+    public String summary() {
+        return String.format("count=%d p50=%.1fus p90=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                             count(), percentile(50) / 1e3, percentile(90) / 1e3,
+                             percentile(99) / 1e3, percentile(99.9) / 1e3,
+                             percentile(100) / 1e3);
+    }
+
+    private static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        // value >>> shift keeps the leading one and SUB_BITS bits below it
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    // the largest value that falls in bucket i
+    private static long highest(int i) {
+        if (i < 2 * SUB_BUCKETS) {
+            return i;
+        }
+
+        int shift = i / SUB_BUCKETS - 1;
+        long mantissa = SUB_BUCKETS + i % SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,178 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Finds the nouns closest to a given noun by shortest
+ *  ancestral path. An ancestral path from a noun goes up through hypernyms
+ *  and then down through hyponyms, so a breadth-first search over (synset,
+ *  direction) states, starting upward from the synsets of the noun, reaches
+ *  every synset at its shortest ancestral distance, in increasing order of
+ *  distance. Nouns are reported as their first synset is reached and the
+ *  search stops as soon as k nouns are found: every noun not yet reached is
+ *  at least as far away. Hyponyms come from a reversed copy of the digraph.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.Queue;
+
+import java.util.Arrays;
+
+public class NearestNouns {
+    private static final int UP = 0;
+    private static final int DOWN = 1;
+
+    // hypernyms, and hyponyms from the reversed digraph
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] downOffsets;
+    private final int[] downTargets;
+
+    private final NounIndex nouns;
+    // nouns of synset v, as indices into nouns, are
+    // synsetNouns[synsetNounOffsets[v] .. synsetNounOffsets[v + 1])
+    private final int[] synsetNounOffsets;
+    private final int[] synsetNouns;
+
+    // scratch borrowed by each query
+    private final ScratchPool<Scratch> scratches;
+
+    NearestNouns(CsrDigraph G, NounIndex nouns) {
+        int V = G.V();
+        CsrDigraph reverse = G.reverse();
+        upOffsets = G.offsets();
+        upTargets = G.targets();
+        downOffsets = reverse.offsets();
+        downTargets = reverse.targets();
+        this.nouns = nouns;
+
+        int[] ids = nouns.ids();
+        synsetNounOffsets = new int[V + 1];
+        for (int id : ids) {
+            synsetNounOffsets[id + 1]++;
+        }
+
+        for (int v = 0; v < V; v++) {
+            synsetNounOffsets[v + 1] += synsetNounOffsets[v];
+        }
+
+        int[] next = Arrays.copyOf(synsetNounOffsets, V);
+        synsetNouns = new int[ids.length];
+        for (int i = 0; i < nouns.size(); i++) {
+            for (int k = nouns.idsFrom(i); k < nouns.idsTo(i); k++) {
+                synsetNouns[next[ids[k]]++] = i;
+            }
+        }
+
+        scratches = new ScratchPool<Scratch>(() -> new Scratch(V, nouns.size()));
+    }
+
+    // the k nouns nearest to noun i, nearest first, not counting noun i
+    // itself; fewer if fewer are connected to it
+    Queue<String> nearest(int noun, int k) {
+        Queue<String> result = new Queue<String>();
+        if (k == 0) {
+            return result;
+        }
+
+        Scratch scratch = scratches.borrow();
+        try {
+            nearest(noun, k, scratch, result);
+        }
+        finally {
+            scratches.release(scratch);
+        }
+        return result;
+    }
+
+    // adds to result the k nouns nearest to noun, using scratch
+    private void nearest(int noun, int k, Scratch scratch, Queue<String> result) {
+        int generation = scratch.start();
+        int[] marked = scratch.marked;
+        int[] reported = scratch.reported;
+        int[] queue = scratch.queue;
+        int tail = 0;
+
+        reported[noun] = generation;
+        int[] ids = nouns.ids();
+        for (int e = nouns.idsFrom(noun); e < nouns.idsTo(noun); e++) {
+            int state = ids[e] << 1 | UP;
+            if (marked[state] != generation) {
+                marked[state] = generation;
+                queue[tail++] = state;
+                if (report(ids[e], scratch, generation, result, k)) {
+                    return;
+                }
+            }
+        }
+
+        for (int head = 0; head < tail; head++) {
+            int v = queue[head] >>> 1;
+            boolean up = (queue[head] & 1) == UP;
+
+            // going up is only possible before the first step down
+            if (up) {
+                for (int e = upOffsets[v]; e < upOffsets[v + 1]; e++) {
+                    int state = upTargets[e] << 1 | UP;
+                    if (marked[state] != generation) {
+                        marked[state] = generation;
+                        queue[tail++] = state;
+                        if (report(upTargets[e], scratch, generation, result, k)) {
+                            return;
+                        }
+                    }
+                }
+            }
+
+            for (int e = downOffsets[v]; e < downOffsets[v + 1]; e++) {
+                int state = downTargets[e] << 1 | DOWN;
+                if (marked[state] != generation) {
+                    marked[state] = generation;
+                    queue[tail++] = state;
+                    if (report(downTargets[e], scratch, generation, result, k)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    // adds the nouns of synset v not reported yet; true once k are reported
+    private boolean report(int v, Scratch scratch, int generation, Queue<String> result,
+                           int k) {
+        int[] reported = scratch.reported;
+        for (int e = synsetNounOffsets[v]; e < synsetNounOffsets[v + 1]; e++) {
+            int i = synsetNouns[e];
+            if (reported[i] != generation) {
+                reported[i] = generation;
+                result.enqueue(nouns.noun(i));
+                if (result.size() == k) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // per-thread search state; an entry is valid only if stamped with the
+    // current generation
+    private static final class Scratch {
+        // states are synset << 1 | direction
+        private final int[] marked;
+        private final int[] queue;
+        private final int[] reported;
+        private int generation;
+
+        Scratch(int V, int nouns) {
+            marked = new int[2 * V];
+            queue = new int[2 * V];
+            reported = new int[nouns];
+        }
+
+        int start() {
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marked, 0);
+                Arrays.fill(reported, 0);
+                generation = 1;
+            }
+            return generation;
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Compact dictionary of the WordNet nouns and synsets. The
+ *  nouns are stored UTF-8 encoded, back to back in one byte array, in
+ *  code point order, and are found by binary search directly against a
+ *  String, so a lookup allocates nothing. The synset ids of every noun are a
+ *  sorted slice of one int array, and the text and gloss of every synset
+ *  are slices of shared byte buffers, decoded only when asked for. The
+ *  text buffers may be views of a mapped snapshot file, read only by
+ *  absolute gets so that any number of threads can share them.
+ **************************************************************************** */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class NounIndex {
+    // noun i is nounText[nounOffsets[i] .. nounOffsets[i + 1]); its synset
+    // ids are ids[idOffsets[i] .. idOffsets[i + 1]), sorted and distinct
+    final ByteBuffer nounText;
+    final int[] nounOffsets;
+    final int[] idOffsets;
+    final int[] ids;
+
+    // the text and gloss of synset id are slices of these, in the same way
+    final ByteBuffer synsetText;
+    final int[] synsetOffsets;
+    final ByteBuffer glossText;
+    final int[] glossOffsets;
+
+    // the text buffers are used from index 0 to their capacity, whatever
+    // their position and limit
+    NounIndex(ByteBuffer nounText, int[] nounOffsets, int[] idOffsets, int[] ids,
+              ByteBuffer synsetText, int[] synsetOffsets, ByteBuffer glossText,
+              int[] glossOffsets) {
+        checkSlices(nounOffsets, nounText.capacity());
+        checkSlices(idOffsets, ids.length);
+        checkSlices(synsetOffsets, synsetText.capacity());
+        checkSlices(glossOffsets, glossText.capacity());
+        if (idOffsets.length != nounOffsets.length || glossOffsets.length != synsetOffsets.length) {
+            throw new IllegalArgumentException("inconsistent noun index");
+        }
+
+        int V = synsetOffsets.length - 1;
+        for (int id : ids) {
+            if (id < 0 || id >= V) {
+                throw new IllegalArgumentException("synset id out of range");
+            }
+        }
+
+        this.nounText = nounText;
+        this.nounOffsets = nounOffsets;
+        this.idOffsets = idOffsets;
+        this.ids = ids;
+        this.synsetText = synsetText;
+        this.synsetOffsets = synsetOffsets;
+        this.glossText = glossText;
+        this.glossOffsets = glossOffsets;
+    }
+
+    // indexes the parsed synsets, whose ids must be 0 to count - 1
+    static NounIndex build(WordNetParser.Synsets synsets) {
+        int V = synsets.count;
+        String[] texts = new String[V];
+        String[] glosses = new String[V];
+        HashMap<String, Integer> numbers = new HashMap<String, Integer>(V * 2);
+        int pairs = 0;
+        for (int i = 0; i < V; i++) {
+            int id = synsets.ids[i];
+            if (id < 0 || id >= V) {
+                throw new IllegalArgumentException("synset id " + id + " out of range");
+            }
+            texts[id] = synsets.texts[i];
+            glosses[id] = synsets.glosses[i];
+
+            for (String noun : synsets.nouns[i]) {
+                if (!numbers.containsKey(noun)) {
+                    numbers.put(noun, numbers.size());
+                }
+                pairs++;
+            }
+        }
+
+        // UTF-8 byte order is code point order
+        int n = numbers.size();
+        byte[][] bytes = new byte[n][];
+        Integer[] order = new Integer[n];
+        for (String noun : numbers.keySet()) {
+            int number = numbers.get(noun);
+            bytes[number] = noun.getBytes(StandardCharsets.UTF_8);
+            order[number] = number;
+        }
+        Arrays.sort(order, (x, y) -> Arrays.compareUnsigned(bytes[x], bytes[y]));
+
+        byte[][] encoded = new byte[n][];
+        int[] rank = new int[n];
+        for (int i = 0; i < n; i++) {
+            encoded[i] = bytes[order[i]];
+            rank[order[i]] = i;
+        }
+
+        // every (noun, id) pair, sorted by noun rank, then id
+        long[] sorted = new long[pairs];
+        int k = 0;
+        for (int i = 0; i < V; i++) {
+            for (String noun : synsets.nouns[i]) {
+                sorted[k++] = (long) rank[numbers.get(noun)] << 32 | synsets.ids[i];
+            }
+        }
+        Arrays.sort(sorted);
+
+        int[] idOffsets = new int[encoded.length + 1];
+        int[] ids = new int[pairs];
+        int count = 0;
+        for (int i = 0; i < pairs; i++) {
+            if (i > 0 && sorted[i] == sorted[i - 1]) {
+                continue;
+            }
+            idOffsets[(int) (sorted[i] >>> 32) + 1]++;
+            ids[count++] = (int) sorted[i];
+        }
+
+        for (int i = 0; i < encoded.length; i++) {
+            idOffsets[i + 1] += idOffsets[i];
+        }
+
+        int[] nounOffsets = offsets(encoded);
+        byte[][] synsetBytes = encode(texts);
+        byte[][] glossBytes = encode(glosses);
+        int[] synsetOffsets = offsets(synsetBytes);
+        int[] glossOffsets = offsets(glossBytes);
+
+        return new NounIndex(concat(encoded, nounOffsets), nounOffsets, idOffsets,
+                             Arrays.copyOf(ids, count), concat(synsetBytes, synsetOffsets),
+                             synsetOffsets, concat(glossBytes, glossOffsets), glossOffsets);
+    }
+
+    // number of distinct nouns
+    public int size() {
+        return nounOffsets.length - 1;
+    }
+
+    // number of synsets
+    public int synsets() {
+        return synsetOffsets.length - 1;
+    }
+
+    // index of noun, or -1 if it is not a noun; allocates nothing
+    public int find(String noun) {
+        return Math.max(search(noun), -1);
+    }
+
+    // a copy of this index with one more synset, numbered synsets(), made of
+    // the space-separated nouns in text
+    NounIndex withSynset(String text, String gloss) {
+        // the new synset's distinct nouns, in code point order
+        String[] words = Arrays.stream(text.split(" ")).filter(word -> !word.isEmpty())
+                               .distinct().toArray(String[]::new);
+        byte[][] encoded = new byte[words.length][];
+        for (int j = 0; j < words.length; j++) {
+            encoded[j] = words[j].getBytes(StandardCharsets.UTF_8);
+        }
+        Arrays.sort(encoded, Arrays::compareUnsigned);
+
+        int n = size();
+        int id = synsets();
+        int[] found = new int[words.length];
+        int added = 0;
+        int addedBytes = 0;
+        for (int j = 0; j < words.length; j++) {
+            found[j] = search(new String(encoded[j], StandardCharsets.UTF_8));
+            if (found[j] < 0) {
+                added++;
+                addedBytes += encoded[j].length;
+            }
+        }
+
+        // merge the new nouns into the old ones, appending id to the slice
+        // of every noun of the synset; id is the largest, so slices stay sorted
+        byte[] newText = new byte[nounText.capacity() + addedBytes];
+        int[] newOffsets = new int[n + added + 1];
+        int[] newIdOffsets = new int[n + added + 1];
+        int[] newIds = new int[ids.length + words.length];
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i <= n; i++) {
+            for (; j < words.length && found[j] < 0 && -found[j] - 1 == i; j++) {
+                System.arraycopy(encoded[j], 0, newText, newOffsets[count], encoded[j].length);
+                newOffsets[count + 1] = newOffsets[count] + encoded[j].length;
+                newIds[newIdOffsets[count]] = id;
+                newIdOffsets[count + 1] = newIdOffsets[count] + 1;
+                count++;
+            }
+
+            if (i == n) {
+                break;
+            }
+
+            int length = nounOffsets[i + 1] - nounOffsets[i];
+            nounText.get(nounOffsets[i], newText, newOffsets[count], length);
+            newOffsets[count + 1] = newOffsets[count] + length;
+
+            int from = idOffsets[i];
+            int slice = idOffsets[i + 1] - from;
+            System.arraycopy(ids, from, newIds, newIdOffsets[count], slice);
+            newIdOffsets[count + 1] = newIdOffsets[count] + slice;
+            if (j < words.length && found[j] == i) {
+                newIds[newIdOffsets[count + 1]++] = id;
+                j++;
+            }
+            count++;
+        }
+
+        ByteBuffer newSynsetText = append(synsetText, text);
+        ByteBuffer newGlossText = append(glossText, gloss);
+        int[] newSynsetOffsets = Arrays.copyOf(synsetOffsets, synsetOffsets.length + 1);
+        int[] newGlossOffsets = Arrays.copyOf(glossOffsets, glossOffsets.length + 1);
+        newSynsetOffsets[id + 1] = newSynsetText.capacity();
+        newGlossOffsets[id + 1] = newGlossText.capacity();
+
+        return new NounIndex(ByteBuffer.wrap(newText), newOffsets, newIdOffsets, newIds, newSynsetText,
+                             newSynsetOffsets, newGlossText, newGlossOffsets);
+    }
+
+    // index of noun, or -(insertion point) - 1 if it is not a noun
+    private int search(String noun) {
+        int lo = 0;
+        int hi = size() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(noun, mid);
+            if (cmp < 0) {
+                hi = mid - 1;
+            }
+            else if (cmp > 0) {
+                lo = mid + 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -lo - 1;
+    }
+
+    public String noun(int i) {
+        return string(nounText, nounOffsets, i);
+    }
+
+    // the synset ids of noun i are ids()[idsFrom(i) .. idsTo(i))
+    int[] ids() {
+        return ids;
+    }
+
+    int idsFrom(int i) {
+        return idOffsets[i];
+    }
+
+    int idsTo(int i) {
+        return idOffsets[i + 1];
+    }
+
+    public String synset(int id) {
+        return string(synsetText, synsetOffsets, id);
+    }
+
+    public String gloss(int id) {
+        return string(glossText, glossOffsets, id);
+    }
+
+    // the nouns, decoded one at a time in code point order
+    public Iterable<String> nouns() {
+        return () -> new Iterator<String>() {
+            private int next;
+
+            public boolean hasNext() {
+                return next < size();
+            }
+
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return noun(next++);
+            }
+        };
+    }
+
+    // approximate footprint of the arrays and text, in bytes, whether the
+    // text is on the heap or mapped
+    public long memoryBytes() {
+        return (long) nounText.capacity() + synsetText.capacity() + glossText.capacity()
+                + 4L * (nounOffsets.length + idOffsets.length + ids.length
+                + synsetOffsets.length + glossOffsets.length);
+    }
+
+    // compares key with noun i by code points, decoding the noun's UTF-8 in
+    // place
+    private int compare(String key, int i) {
+        int k = 0;
+        int p = nounOffsets[i];
+        int end = nounOffsets[i + 1];
+        while (k < key.length() && p < end) {
+            int c = key.codePointAt(k);
+            k += Character.charCount(c);
+
+            int b = nounText.get(p++) & 0xff;
+            int d;
+            if (b < 0x80) {
+                d = b;
+            }
+            else if (b < 0xe0) {
+                d = (b & 0x1f) << 6 | nounText.get(p++) & 0x3f;
+            }
+            else if (b < 0xf0) {
+                d = (b & 0x0f) << 12 | (nounText.get(p++) & 0x3f) << 6 | nounText.get(p++) & 0x3f;
+            }
+            else {
+                d = (b & 0x07) << 18 | (nounText.get(p++) & 0x3f) << 12
+                        | (nounText.get(p++) & 0x3f) << 6 | nounText.get(p++) & 0x3f;
+            }
+
+            if (c != d) {
+                return c < d ? -1 : 1;
+            }
+        }
+
+        if (k < key.length()) {
+            return 1;
+        }
+        return p < end ? -1 : 0;
+    }
+
+    private static String string(ByteBuffer text, int[] offsets, int i) {
+        byte[] bytes = new byte[offsets[i + 1] - offsets[i]];
+        text.get(offsets[i], bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void checkSlices(int[] offsets, int length) {
+        if (offsets.length == 0 || offsets[0] != 0 || offsets[offsets.length - 1] != length) {
+            throw new IllegalArgumentException("malformed offsets");
+        }
+
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i - 1] > offsets[i]) {
+                throw new IllegalArgumentException("malformed offsets");
+            }
+        }
+    }
+
+    private static byte[][] encode(String[] strings) {
+        byte[][] encoded = new byte[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            encoded[i] = strings[i] == null ? new byte[0]
+                                            : strings[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return encoded;
+    }
+
+    private static int[] offsets(byte[][] sections) {
+        int[] offsets = new int[sections.length + 1];
+        for (int i = 0; i < sections.length; i++) {
+            if (offsets[i] > Integer.MAX_VALUE - sections[i].length) {
+                throw new IllegalArgumentException("text too large to index");
+            }
+            offsets[i + 1] = offsets[i] + sections[i].length;
+        }
+        return offsets;
+    }
+
+    // a heap copy of text with more appended; a mapped text is copied too
+    private static ByteBuffer append(ByteBuffer text, String more) {
+        byte[] bytes = more.getBytes(StandardCharsets.UTF_8);
+        int length = text.capacity();
+        if (bytes.length > Integer.MAX_VALUE - length) {
+            throw new IllegalArgumentException("text too large to index");
+        }
+
+        byte[] appended = new byte[length + bytes.length];
+        text.get(0, appended, 0, length);
+        System.arraycopy(bytes, 0, appended, length, bytes.length);
+        return ByteBuffer.wrap(appended);
+    }
+
+    private static ByteBuffer concat(byte[][] sections, int[] offsets) {
+        byte[] text = new byte[offsets[sections.length]];
+        for (int i = 0; i < sections.length; i++) {
+            System.arraycopy(sections[i], 0, text, offsets[i], sections[i].length);
+        }
+        return ByteBuffer.wrap(text);
+    }
+}
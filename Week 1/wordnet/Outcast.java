@@ -15,15 +15,17 @@ public class Outcast {
     }
 
     public String outcast(String[] nouns) {
+        int[][] distances = w.distanceMatrix(nouns);
+
         String result = "";
         int max = 0;
-        for (String noun1 : nouns) {
+        for (int i = 0; i < nouns.length; i++) {
             int d = 0;
-            for (String noun2 : nouns)
-                d += w.distance(noun1, noun2);
+            for (int j = 0; j < nouns.length; j++)
+                d += distances[i][j];
             if (max < d) {
                 max = d;
-                result = noun1;
+                result = nouns[i];
             }
         }
 
@@ -5,268 +5,688 @@
  *  v and w in a digraph is a directed path from v to a common ancestor x,
  *  together with a directed path from w to the same ancestor x. A shortest
  *  ancestral path is an ancestral path of minimum total length. An ancestral
- *  path is a path, but not a directed path.
+ *  path is a path, but not a directed path. The digraph is kept in
+ *  compressed sparse row form with its vertices renumbered in breadth-first
+ *  order up from the roots, so the vertices a search visits together tend
+ *  to sit together in memory. Callers only ever see the original ids.
  **************************************************************************** */
 
-import edu.princeton.cs.algs4.BreadthFirstDirectedPaths;
 import edu.princeton.cs.algs4.Digraph;
 import edu.princeton.cs.algs4.In;
-import edu.princeton.cs.algs4.Queue;
 import edu.princeton.cs.algs4.StdIn;
 import edu.princeton.cs.algs4.StdOut;
+import jdk.jfr.FlightRecorder;
 
-import java.util.AbstractMap.SimpleEntry;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SAP {
-    private final Digraph digraph;
-    private final HashMap<Entry<Integer, Integer>, Integer> lenCache;
-    private final HashMap<Map.Entry<Integer, Integer>, Integer> ansCache;
+    static final int DEFAULT_CACHE_SIZE = 1 << 16;
+    // no ancestral path: length and ancestor both -1
+    private static final long NONE = SAPCache.pack(-1, -1);
+
+    // edges in internal ids: those leaving v are targets[offsets[v] .. offsets[v + 1])
+    private final int[] offsets;
+    private final int[] targets;
+    // internal id of each original vertex id, and back
+    private final int[] internal;
+    private final int[] external;
+    private final SAPCache cache;
+    // the cache version this digraph belongs to; results are only cached
+    // until the cache is invalidated for a newer digraph
+    private final long version;
+    // labels answering queries without a search, or null if not indexed
+    private final AncestorIndex index;
+
+    // search state borrowed by each query, so that one SAP can serve many
+    // threads without holding a search per thread
+    private final ScratchPool<Search> searches;
+
+    // counters of the queries, or null while not instrumented; queries only
+    // read this field when instrumentation is off
+    private volatile Instrumentation instrumentation;
 
     public SAP(Digraph G) {
-        if (G == null) {
-            throw new IllegalArgumentException("called SAP() with null G");
+        this(G, DEFAULT_CACHE_SIZE);
+    }
+
+    // same as above, caching the results of up to about cacheSize queries
+    public SAP(Digraph G, int cacheSize) {
+        this(toCsr(G), cacheSize, false);
+    }
+
+    // same as above for a digraph already in compressed sparse row form; if
+    // indexed, G must be acyclic and queries are answered from an
+    // AncestorIndex instead of by search
+    SAP(CsrDigraph G, int cacheSize, boolean indexed) {
+        this(G, breadthFirstFromRoots(G), new SAPCache(cacheSize),
+             indexed ? new AncestorIndex(G) : null);
+    }
+
+    // G with its vertices renumbered so that vertex order[i] becomes i
+    private SAP(CsrDigraph G, int[] order, SAPCache cache, AncestorIndex index) {
+        int V = G.V();
+        internal = new int[V];
+        external = order;
+        for (int i = 0; i < V; i++) {
+            internal[order[i]] = i;
+        }
+
+        int[] edgeOffsets = G.offsets();
+        int[] edgeTargets = G.targets();
+        offsets = new int[V + 1];
+        targets = new int[G.E()];
+        for (int i = 0; i < V; i++) {
+            int v = order[i];
+            int k = offsets[i];
+            for (int e = edgeOffsets[v]; e < edgeOffsets[v + 1]; e++) {
+                targets[k++] = internal[edgeTargets[e]];
+            }
+            offsets[i + 1] = k;
+        }
+
+        this.cache = cache;
+        this.version = cache.version();
+        // the labels use the original ids, so queries need no translation
+        this.index = index;
+        this.searches = new ScratchPool<Search>(() -> new Search(V));
+    }
+
+    // a SAP for G, which is this SAP's digraph with vertices or edges added.
+    // Existing vertices keep their internal ids and new ones are numbered
+    // after them, so nothing is renumbered. changed[v] marks the vertices
+    // whose ancestors differ in G; cache entries on them are dropped and the
+    // rest are shared with the new SAP. An ancestor index only merges the
+    // labels of those vertices and of new ones again
+    SAP extend(CsrDigraph G, boolean[] changed) {
+        int[] order = Arrays.copyOf(external, G.V());
+        for (int v = external.length; v < G.V(); v++) {
+            order[v] = v;
         }
 
-        this.digraph = new Digraph(G);
-        this.lenCache = new HashMap<Entry<Integer, Integer>, Integer>();
-        this.ansCache = new HashMap<Entry<Integer, Integer>, Integer>();
+        cache.invalidate(changed);
+        SAP extended = new SAP(G, order, cache,
+                               index == null ? null : index.extend(G, changed));
+        extended.instrumentation = instrumentation;
+        return extended;
+    }
+
+    // starts recording statistics of every query, from zero, and emitting
+    // SAPQueryEvent to Flight Recorder; or stops doing so
+    public void setInstrumented(boolean instrumented) {
+        instrumentation = instrumented ? new Instrumentation() : null;
+    }
+
+    // statistics since instrumentation was last turned on; all zero if it is off
+    public SAPStats stats() {
+        Instrumentation in = instrumentation;
+        return in == null ? new Instrumentation().snapshot() : in.snapshot();
     }
 
     public int length(int v, int w) {
-        validateVertex(v);
-        validateVertex(w);
+        return SAPCache.length(query(v, w));
+    }
+
+    public int ancestor(int v, int w) {
+        return SAPCache.ancestor(query(v, w));
+    }
+
+    public int length(Iterable<Integer> v, Iterable<Integer> w) {
+        return SAPCache.length(query(v, w));
+    }
+
+    public int ancestor(Iterable<Integer> v, Iterable<Integer> w) {
+        return SAPCache.ancestor(query(v, w));
+    }
+
+    public long cacheHits() {
+        return cache.hits();
+    }
+
+    public long cacheMisses() {
+        return cache.misses();
+    }
 
-        Entry<Integer, Integer> key1 = new SimpleEntry<>(v, w);
-        if (lenCache.containsKey(key1)) {
-            return lenCache.get(key1);
+    public long cacheEvictions() {
+        return cache.evictions();
+    }
+
+    // (length, ancestor) between source and each of others, packed as by
+    // SAPCache; every array holds valid original ids, sorted and distinct.
+    // One search from source serves all of others, each of which only
+    // searches its own side. The results bypass the cache, so that a large
+    // batch does not evict the entries of single queries
+    long[] fromSource(int[] source, int[][] others) {
+        long[] results = new long[others.length];
+        Instrumentation in = instrumentation;
+        if (index != null) {
+            for (int i = 0; i < others.length; i++) {
+                SAPQueryEvent event = beginEvent();
+                long start = in == null ? 0 : System.nanoTime();
+                long result = index.sets(source, 0, source.length, others[i], 0,
+                                         others[i].length);
+                results[i] = finish(in, event, start, Kind.BATCH, Outcome.INDEX, 0, 0, result);
+            }
+            return results;
         }
 
-        Entry<Integer, Integer> key2 = new SimpleEntry<>(w, v);
-        if (lenCache.containsKey(key2)) {
-            return lenCache.get(key2);
+        Search search = searches.borrow();
+        try {
+            // the search from source is counted with the first of others
+            SAPQueryEvent event = beginEvent();
+            long start = in == null ? 0 : System.nanoTime();
+            search.source(source);
+            int sourceVisited = search.visitedV();
+            int sourceEdges = search.scannedEdges;
+            for (int i = 0; i < others.length; i++) {
+                if (i > 0) {
+                    event = beginEvent();
+                    start = in == null ? 0 : System.nanoTime();
+                    sourceVisited = 0;
+                    sourceEdges = 0;
+                }
+
+                search.against(others[i]);
+                long result = search.bestAncestor < 0
+                              ? NONE
+                              : SAPCache.pack(search.bestLength, external[search.bestAncestor]);
+                results[i] = finish(in, event, start, Kind.BATCH, Outcome.SEARCH,
+                                    sourceVisited + search.visitedW(),
+                                    sourceEdges + search.scannedEdges, result);
+            }
+        }
+        finally {
+            searches.release(search);
         }
+        return results;
+    }
 
-        BreadthFirstDirectedPaths vp = new BreadthFirstDirectedPaths(this.digraph, v);
-        BreadthFirstDirectedPaths wp = new BreadthFirstDirectedPaths(this.digraph, w);
+    // the ancestor index, or null if this SAP searches the digraph
+    AncestorIndex ancestorIndex() {
+        return index;
+    }
 
-        Queue<Integer> queue = new Queue<Integer>();
-        queue.enqueue(v);
-        queue.enqueue(w);
+    public static void main(String[] args) {
+        In in = new In(args[0]);
+        Digraph G = new Digraph(in);
+        StdOut.println(G.V());
+        SAP sap = new SAP(G);
+        while (!StdIn.isEmpty()) {
+            int v = StdIn.readInt();
+            int w = StdIn.readInt();
+            int length = sap.length(v, w);
+            int ancestor = sap.ancestor(v, w);
+            StdOut.printf("length = %d, ancestor = %d\n", length, ancestor);
+        }
+    }
 
-        boolean[] visited = new boolean[this.digraph.V()];
-        visited[v] = true;
-        visited[w] = true;
+    private static CsrDigraph toCsr(Digraph G) {
+        if (G == null) {
+            throw new IllegalArgumentException("called SAP() with null G");
+        }
 
-        int length = Integer.MAX_VALUE;
+        return new CsrDigraph(G);
+    }
 
-        while (!queue.isEmpty()) {
-            int cur = queue.dequeue();
-            if (wp.hasPathTo(cur) && vp.hasPathTo(cur))
-                length = Math.min(length, vp.distTo(cur) + wp.distTo(cur));
+    // the vertices of G in breadth-first order along reversed edges, starting
+    // from every root (vertex without outgoing edges) in id order; vertices
+    // that reach no root, which only a digraph with cycles has, come last
+    private static int[] breadthFirstFromRoots(CsrDigraph G) {
+        int V = G.V();
+        CsrDigraph reverse = G.reverse();
+        int[] reverseOffsets = reverse.offsets();
+        int[] reverseTargets = reverse.targets();
+
+        int[] order = new int[V];
+        boolean[] marked = new boolean[V];
+        int tail = 0;
+        for (int v = 0; v < V; v++) {
+            if (G.outdegree(v) == 0) {
+                marked[v] = true;
+                order[tail++] = v;
+            }
+        }
 
-            for (int next : this.digraph.adj(cur)) {
-                if (!visited[next]) {
-                    visited[next] = true;
-                    queue.enqueue(next);
+        for (int head = 0; head < tail; head++) {
+            int v = order[head];
+            for (int k = reverseOffsets[v]; k < reverseOffsets[v + 1]; k++) {
+                int w = reverseTargets[k];
+                if (!marked[w]) {
+                    marked[w] = true;
+                    order[tail++] = w;
                 }
             }
         }
 
-        if (length == Integer.MAX_VALUE) {
-            lenCache.put(key1, -1);
-            lenCache.put(key2, -1);
-            return -1;
+        for (int v = 0; v < V && tail < V; v++) {
+            if (!marked[v]) {
+                order[tail++] = v;
+            }
         }
 
-        lenCache.put(key1, length);
-        lenCache.put(key2, length);
-        return length;
+        return order;
     }
 
-    public int ancestor(int v, int w) {
+    // (length, ancestor) packed as by SAPCache
+    private long query(int v, int w) {
         validateVertex(v);
         validateVertex(w);
 
-        Entry<Integer, Integer> key1 = new SimpleEntry<>(v, w);
-        if (ansCache.containsKey(key1)) {
-            return ansCache.get(key1);
+        Instrumentation in = instrumentation;
+        SAPQueryEvent event = beginEvent();
+        long start = in == null ? 0 : System.nanoTime();
+
+        // merging two labels is cheaper than a cache lookup
+        if (index != null) {
+            return finish(in, event, start, Kind.PAIR, Outcome.INDEX, 0, 0, index.pair(v, w));
         }
 
-        Entry<Integer, Integer> key2 = new SimpleEntry<>(w, v);
-        if (ansCache.containsKey(key2)) {
-            return ansCache.get(key2);
+        long cached = cache.get(v, w);
+        if (cached != SAPCache.MISS) {
+            return finish(in, event, start, Kind.PAIR, Outcome.HIT, 0, 0, cached);
         }
 
-        BreadthFirstDirectedPaths vp = new BreadthFirstDirectedPaths(this.digraph, v);
-        BreadthFirstDirectedPaths wp = new BreadthFirstDirectedPaths(this.digraph, w);
+        Search search = searches.borrow();
+        try {
+            search.pair(internal[v], internal[w]);
+            int ancestor = search.bestAncestor < 0 ? -1 : external[search.bestAncestor];
+            cache.put(v, w, search.bestLength, ancestor, version);
+            return finish(in, event, start, Kind.PAIR, Outcome.SEARCH, search.visited(),
+                          search.scannedEdges, SAPCache.pack(search.bestLength, ancestor));
+        }
+        finally {
+            searches.release(search);
+        }
+    }
 
-        Queue<Integer> queue = new Queue<Integer>();
-        queue.enqueue(v);
-        queue.enqueue(w);
+    private long query(Iterable<Integer> v, Iterable<Integer> w) {
+        int[] a = toSortedIds(v);
+        if (a.length == 0)
+            return NONE;
 
-        boolean[] visited = new boolean[this.digraph.V()];
-        visited[v] = true;
-        visited[w] = true;
+        int[] b = toSortedIds(w);
+        if (b.length == 0)
+            return NONE;
 
-        int minpath = Integer.MAX_VALUE;
-        int ans = Integer.MAX_VALUE;
+        return query(a, 0, a.length, b, 0, b.length);
+    }
 
-        while (!queue.isEmpty()) {
-            int cur = queue.dequeue();
-            if (wp.hasPathTo(cur) && vp.hasPathTo(cur)) {
-                if (minpath > wp.distTo(cur) + vp.distTo(cur)) {
-                    minpath = wp.distTo(cur) + vp.distTo(cur);
-                    ans = cur;
-                }
-            }
+    // (length, ancestor) between the sets a[aFrom .. aTo) and b[bFrom .. bTo)
+    // of valid original ids, each sorted and distinct, packed as by
+    // SAPCache; allocates nothing unless the result has to be computed
+    long query(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        if (aFrom == aTo || bFrom == bTo) {
+            return NONE;
+        }
 
-            for (int next : this.digraph.adj(cur)) {
-                if (!visited[next]) {
-                    visited[next] = true;
-                    queue.enqueue(next);
-                }
-            }
+        Instrumentation in = instrumentation;
+        SAPQueryEvent event = beginEvent();
+        long start = in == null ? 0 : System.nanoTime();
+
+        if (index != null) {
+            return finish(in, event, start, Kind.SETS, Outcome.INDEX, 0, 0,
+                          index.sets(a, aFrom, aTo, b, bFrom, bTo));
         }
 
-        if (ans == Integer.MAX_VALUE) {
-            ansCache.put(key1, -1);
-            ansCache.put(key2, -1);
-            return -1;
+        long cached = cache.get(a, aFrom, aTo, b, bFrom, bTo);
+        if (cached != SAPCache.MISS) {
+            return finish(in, event, start, Kind.SETS, Outcome.HIT, 0, 0, cached);
         }
 
-        ansCache.put(key1, ans);
-        ansCache.put(key2, ans);
-        return ans;
+        Search search = searches.borrow();
+        try {
+            search.sets(a, aFrom, aTo, b, bFrom, bTo);
+            int ancestor = search.bestAncestor < 0 ? -1 : external[search.bestAncestor];
+            cache.put(a, aFrom, aTo, b, bFrom, bTo, search.bestLength, ancestor, version);
+            return finish(in, event, start, Kind.SETS, Outcome.SEARCH, search.visited(),
+                          search.scannedEdges, SAPCache.pack(search.bestLength, ancestor));
+        }
+        finally {
+            searches.release(search);
+        }
     }
 
-    public int length(Iterable<Integer> v, Iterable<Integer> w) {
-        if (validateVertices(v) == 0)
-            return -1;
-
-        if (validateVertices(w) == 0)
-            return -1;
+    // a started event for one query, or null unless a recording enabled it.
+    // Until Flight Recorder is started queries allocate no event, and the
+    // check does not start it
+    private static SAPQueryEvent beginEvent() {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
 
-        BreadthFirstDirectedPaths vp = new BreadthFirstDirectedPaths(this.digraph, v);
-        BreadthFirstDirectedPaths wp = new BreadthFirstDirectedPaths(this.digraph, w);
+        SAPQueryEvent event = new SAPQueryEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
 
-        Queue<Integer> queue = new Queue<Integer>();
-        boolean[] visited = new boolean[this.digraph.V()];
+        event.begin();
+        return event;
+    }
 
-        for (int v1 : v) {
-            queue.enqueue(v1);
-            visited[v1] = true;
+    // records a query that began at start, and with event, in the statistics
+    // if in is not null and in Flight Recorder if event is not null;
+    // returns its result
+    private static long finish(Instrumentation in, SAPQueryEvent event, long start, Kind kind,
+                               Outcome outcome, int visited, int edges, long result) {
+        if (in != null) {
+            in.record(outcome, System.nanoTime() - start, visited, edges);
         }
 
-        for (int w1 : w) {
-            queue.enqueue(w1);
-            visited[w1] = true;
+        if (event != null && event.shouldCommit()) {
+            event.kind = kind.label;
+            event.outcome = outcome.label;
+            event.visited = visited;
+            event.edges = edges;
+            event.length = SAPCache.length(result);
+            event.commit();
         }
-        int length = Integer.MAX_VALUE;
+        return result;
+    }
 
-        while (!queue.isEmpty()) {
-            int cur = queue.dequeue();
-            if (wp.hasPathTo(cur) && vp.hasPathTo(cur))
-                length = Math.min(length, vp.distTo(cur) + wp.distTo(cur));
+    private void validateVertex(int v) {
+        if (v < 0 || v >= internal.length)
+            throw new IllegalArgumentException("v out of range");
+    }
 
-            for (int next : this.digraph.adj(cur)) {
-                if (!visited[next]) {
-                    visited[next] = true;
-                    queue.enqueue(next);
-                }
+    // validated vertex ids, sorted and without duplicates
+    private int[] toSortedIds(Iterable<Integer> vertices) {
+        if (vertices == null)
+            throw new IllegalArgumentException("argument is null");
+
+        int count = 0;
+        int[] ids = new int[8];
+        for (Integer v : vertices) {
+            if (v == null) {
+                throw new IllegalArgumentException("vertex is null");
+            }
+            validateVertex(v);
+
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
             }
+            ids[count++] = v;
         }
 
-        if (length == Integer.MAX_VALUE) {
-            return -1;
+        Arrays.sort(ids, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || ids[i] != ids[distinct - 1]) {
+                ids[distinct++] = ids[i];
+            }
         }
 
-        return length;
+        return Arrays.copyOf(ids, distinct);
     }
 
-    public int ancestor(Iterable<Integer> v, Iterable<Integer> w) {
-        if (validateVertices(v) == 0)
-            return -1;
+    // Scratch state of the search, reused by every query of one thread. Each
+    // side has a BFS queue and distances; an entry is valid only if the
+    // vertex is marked with the current generation of its side, so starting a
+    // query is O(1). The sides have separate generations so that the v side
+    // of a batch can be searched once and met by many w sides. All ids here
+    // are internal, except where noted.
+    private final class Search {
+        private final int[] markV;
+        private final int[] markW;
+        private final int[] distV;
+        private final int[] distW;
+        private final int[] queueV;
+        private final int[] queueW;
+        private int generationV;
+        private int generationW;
+        private int tailV;
+        private int tailW;
+        // queueV[0 .. expandedV) was fully expanded by source()
+        private int expandedV;
+        // edges followed since the w side was last started, or by source()
+        private int scannedEdges;
+
+        // result of the last search, -1 if there is no common ancestor
+        private int bestLength;
+        private int bestAncestor;
+
+        Search(int n) {
+            markV = new int[n];
+            markW = new int[n];
+            distV = new int[n];
+            distW = new int[n];
+            queueV = new int[n];
+            queueW = new int[n];
+        }
+
+        void pair(int v, int w) {
+            startV();
+            startW();
+            addSourceV(v);
+            addSourceW(w);
+            search();
+        }
+
+        // v[vFrom .. vTo) and w[wFrom .. wTo) hold original ids
+        void sets(int[] v, int vFrom, int vTo, int[] w, int wFrom, int wTo) {
+            startV();
+            startW();
+            for (int i = vFrom; i < vTo; i++) {
+                addSourceV(internal[v[i]]);
+            }
 
-        if (validateVertices(w) == 0)
-            return -1;
+            for (int i = wFrom; i < wTo; i++) {
+                addSourceW(internal[w[i]]);
+            }
+            search();
+        }
 
-        BreadthFirstDirectedPaths vp = new BreadthFirstDirectedPaths(this.digraph, v);
-        BreadthFirstDirectedPaths wp = new BreadthFirstDirectedPaths(this.digraph, w);
+        // searches everything reachable from the original ids v, for the
+        // calls to against() that follow
+        void source(int[] v) {
+            startV();
+            for (int v1 : v) {
+                addSourceV(internal[v1]);
+            }
+
+            scannedEdges = 0;
+            for (int headV = 0; headV < tailV; headV++) {
+                int cur = queueV[headV];
+                int next = distV[cur] + 1;
+                scannedEdges += offsets[cur + 1] - offsets[cur];
+                for (int k = offsets[cur], end = offsets[cur + 1]; k < end; k++) {
+                    int x = targets[k];
+                    if (markV[x] != generationV) {
+                        markV[x] = generationV;
+                        distV[x] = next;
+                        queueV[tailV++] = x;
+                    }
+                }
+            }
+            expandedV = tailV;
+        }
 
-        Queue<Integer> queue = new Queue<Integer>();
-        boolean[] visited = new boolean[this.digraph.V()];
+        // shortest ancestral path between the last source() and the original
+        // ids w; only the w side is searched
+        void against(int[] w) {
+            startW();
+            for (int w1 : w) {
+                addSourceW(internal[w1]);
+            }
+            search();
+        }
 
-        for (int v1 : v) {
-            queue.enqueue(v1);
-            visited[v1] = true;
+        private void startV() {
+            if (++generationV == Integer.MAX_VALUE) {
+                Arrays.fill(markV, 0);
+                generationV = 1;
+            }
+            tailV = 0;
+            expandedV = 0;
         }
 
-        for (int w1 : w) {
-            queue.enqueue(w1);
-            visited[w1] = true;
+        private void startW() {
+            if (++generationW == Integer.MAX_VALUE) {
+                Arrays.fill(markW, 0);
+                generationW = 1;
+            }
+            tailW = 0;
+            scannedEdges = 0;
+            bestLength = Integer.MAX_VALUE;
+            bestAncestor = -1;
         }
 
-        int minpath = Integer.MAX_VALUE;
-        int ans = Integer.MAX_VALUE;
+        private void addSourceV(int v) {
+            if (markV[v] != generationV) {
+                markV[v] = generationV;
+                distV[v] = 0;
+                queueV[tailV++] = v;
+                meet(v, 0, markW, generationW, distW);
+            }
+        }
 
-        while (!queue.isEmpty()) {
-            int cur = queue.dequeue();
-            if (wp.hasPathTo(cur) && vp.hasPathTo(cur)) {
-                if (minpath > wp.distTo(cur) + vp.distTo(cur)) {
-                    minpath = wp.distTo(cur) + vp.distTo(cur);
-                    ans = cur;
-                }
+        private void addSourceW(int w) {
+            if (markW[w] != generationW) {
+                markW[w] = generationW;
+                distW[w] = 0;
+                queueW[tailW++] = w;
+                meet(w, 0, markV, generationV, distV);
             }
+        }
 
-            for (int next : this.digraph.adj(cur)) {
-                if (!visited[next]) {
-                    visited[next] = true;
-                    queue.enqueue(next);
+        // Both breadth-first searches advance one vertex at a time, in turn. A
+        // vertex reached from both sides is a common ancestor; the search checks
+        // it when the second side reaches it. A side stops expanding once its
+        // next vertex is at least bestLength - 1 away: anything it would reach
+        // is at least bestLength away from its own sources alone. After
+        // source() the v side has nothing left to expand.
+        private void search() {
+            int headV = expandedV;
+            int headW = 0;
+
+            while (true) {
+                boolean moreV = headV < tailV && distV[queueV[headV]] + 1 < bestLength;
+                boolean moreW = headW < tailW && distW[queueW[headW]] + 1 < bestLength;
+                if (!moreV && !moreW) {
+                    break;
                 }
+
+                if (moreV) {
+                    int cur = queueV[headV++];
+                    int next = distV[cur] + 1;
+                    scannedEdges += offsets[cur + 1] - offsets[cur];
+                    for (int k = offsets[cur], end = offsets[cur + 1]; k < end; k++) {
+                        int x = targets[k];
+                        if (markV[x] != generationV) {
+                            markV[x] = generationV;
+                            distV[x] = next;
+                            queueV[tailV++] = x;
+                            meet(x, next, markW, generationW, distW);
+                        }
+                    }
+                }
+
+                if (moreW) {
+                    int cur = queueW[headW++];
+                    int next = distW[cur] + 1;
+                    scannedEdges += offsets[cur + 1] - offsets[cur];
+                    for (int k = offsets[cur], end = offsets[cur + 1]; k < end; k++) {
+                        int x = targets[k];
+                        if (markW[x] != generationW) {
+                            markW[x] = generationW;
+                            distW[x] = next;
+                            queueW[tailW++] = x;
+                            meet(x, next, markV, generationV, distV);
+                        }
+                    }
+                }
+            }
+
+            if (bestLength == Integer.MAX_VALUE) {
+                bestLength = -1;
             }
         }
 
-        if (ans == Integer.MAX_VALUE) {
-            return -1;
+        // vertices reached by the last search, counted once per side
+        int visited() {
+            return tailV + tailW;
+        }
+
+        // vertices reached by each side of the last search
+        int visitedV() {
+            return tailV;
+        }
+
+        int visitedW() {
+            return tailW;
         }
 
-        return ans;
+        // x was just reached at distance dist; if the other side already reached
+        // it, the two paths form an ancestral path through x
+        private void meet(int x, int dist, int[] otherMark, int otherGeneration,
+                          int[] otherDist) {
+            if (otherMark[x] == otherGeneration && dist + otherDist[x] < bestLength) {
+                bestLength = dist + otherDist[x];
+                bestAncestor = x;
+            }
+        }
     }
 
-    public static void main(String[] args) {
-        In in = new In(args[0]);
-        Digraph G = new Digraph(in);
-        StdOut.println(G.V());
-        SAP sap = new SAP(G);
-        while (!StdIn.isEmpty()) {
-            int v = StdIn.readInt();
-            int w = StdIn.readInt();
-            int length = sap.length(v, w);
-            int ancestor = sap.ancestor(v, w);
-            StdOut.printf("length = %d, ancestor = %d\n", length, ancestor);
+    // what a query was: one of the public queries, or one pair of a batch
+    private enum Kind {
+        PAIR("pair"), SETS("sets"), BATCH("batch");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
         }
     }
 
-    private void validateVertex(int v) {
-        if (v < 0 || v > this.digraph.V())
-            throw new IllegalArgumentException("v out of range");
+    // how a query was answered
+    private enum Outcome {
+        HIT("hit"), SEARCH("search"), INDEX("index");
+
+        private final String label;
+
+        Outcome(String label) {
+            this.label = label;
+        }
     }
 
-    private int validateVertices(Iterable<Integer> vertices) {
-        if (vertices == null)
-            throw new IllegalArgumentException("argument is null");
+    // query statistics, updated by many threads at once
+    private static final class Instrumentation {
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder searched = new LongAdder();
+        private final LongAdder indexed = new LongAdder();
+        private final LongAdder visited = new LongAdder();
+        private final LongAdder edges = new LongAdder();
+        private final AtomicLong maxVisited = new AtomicLong();
+        private final LatencyHistogram hitLatency = new LatencyHistogram();
+        private final LatencyHistogram computedLatency = new LatencyHistogram();
+
+        // a query that took latency ns had the given outcome; a search
+        // reached visitedVertices and followed scannedEdges
+        void record(Outcome outcome, long latency, int visitedVertices, int scannedEdges) {
+            queries.increment();
+            if (outcome == Outcome.HIT) {
+                hits.increment();
+                hitLatency.record(latency);
+                return;
+            }
 
-        int count = 0;
-        for (Integer v : vertices) {
-            if (v == null) {
-                throw new IllegalArgumentException("vertex is null");
+            computedLatency.record(latency);
+            if (outcome == Outcome.INDEX) {
+                indexed.increment();
+                return;
             }
-            count++;
+
+            searched.increment();
+            visited.add(visitedVertices);
+            edges.add(scannedEdges);
+            maxVisited.accumulateAndGet(visitedVertices, Math::max);
         }
 
-        return count;
+        SAPStats snapshot() {
+            return new SAPStats(queries.sum(), hits.sum(), searched.sum(), indexed.sum(),
+                                visited.sum(), edges.sum(), maxVisited.get(),
+                                hitLatency.copy(), computedLatency.copy());
+        }
     }
 }
@@ -0,0 +1,299 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Bounded cache of shortest ancestral path results. Each entry
+ *  holds a (length, ancestor) pair under a canonical key, so (v, w) and
+ *  (w, v) share one entry. Vertex pairs are keyed by a packed long; vertex
+ *  sets by a 64-bit fingerprint of their sorted ids, confirmed against the
+ *  stored ids on a hit; sets may also be given as slices of larger arrays,
+ *  so that a lookup allocates nothing. The table is 4-way set-associative with
+ *  least-recently-used replacement inside each set. It is safe for use by
+ *  many threads: sets are divided among lock stripes, so threads only
+ *  contend when they touch sets of the same stripe. When the digraph
+ *  changes, invalidate() drops the entries of the vertices it affects, and
+ *  results computed on the old digraph are no longer accepted.
+ **************************************************************************** */
+
+import java.util.Arrays;
+
+public class SAPCache {
+    // value returned by get() when the key is not cached
+    public static final long MISS = Long.MIN_VALUE;
+
+    private static final int WAYS = 4;
+    private static final int STRIPES = 64;
+    // pair keys are non-negative, set fingerprints have the sign bit set
+    private static final long SET_KEY = Long.MIN_VALUE;
+
+    private final int setMask;
+    private final long[] keys;
+    private final long[] values;
+    private final long[] lastUsed;
+    private final int[][] idsA;
+    private final int[][] idsB;
+
+    // per stripe, guarded by locks[stripe]
+    private final Object[] locks;
+    private final long[] clock;
+    private final long[] hits;
+    private final long[] misses;
+    private final long[] evictions;
+
+    // incremented by every invalidate(); puts of an older version are dropped
+    private volatile long version;
+
+    // creates a cache holding at least capacity entries
+    public SAPCache(int capacity) {
+        if (capacity < 1 || capacity > 1 << 28) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^28");
+        }
+
+        int sets = Integer.highestOneBit((capacity + WAYS - 1) / WAYS);
+        if (sets * WAYS < capacity) {
+            sets <<= 1;
+        }
+
+        setMask = sets - 1;
+        keys = new long[sets * WAYS];
+        values = new long[sets * WAYS];
+        lastUsed = new long[sets * WAYS];
+        idsA = new int[sets * WAYS][];
+        idsB = new int[sets * WAYS][];
+
+        int stripes = Math.min(sets, STRIPES);
+        locks = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+        }
+        clock = new long[stripes];
+        hits = new long[stripes];
+        misses = new long[stripes];
+        evictions = new long[stripes];
+    }
+
+    // cached result for the vertices v and w, in either order, or MISS
+    public long get(int v, int w) {
+        return lookup(pairKey(v, w), null, 0, 0, null, 0, 0);
+    }
+
+    public void put(int v, int w, int length, int ancestor) {
+        put(v, w, length, ancestor, version);
+    }
+
+    // same as above, unless invalidate() was called since version() returned
+    // version
+    public void put(int v, int w, int length, int ancestor, long version) {
+        store(pairKey(v, w), null, null, pack(length, ancestor), version);
+    }
+
+    // cached result for the vertex sets a and b, in either order, or MISS;
+    // both arrays must be sorted and free of duplicates
+    public long get(int[] a, int[] b) {
+        return get(a, 0, a.length, b, 0, b.length);
+    }
+
+    // the cache keeps references to a and b, which must not change afterwards
+    public void put(int[] a, int[] b, int length, int ancestor) {
+        putSets(a, b, pack(length, ancestor), version);
+    }
+
+    // same as get(int[], int[]) for the sets a[aFrom .. aTo) and b[bFrom .. bTo)
+    public long get(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        if (Arrays.compare(a, aFrom, aTo, b, bFrom, bTo) > 0) {
+            return lookup(setKey(b, bFrom, bTo, a, aFrom, aTo), b, bFrom, bTo, a, aFrom, aTo);
+        }
+        return lookup(setKey(a, aFrom, aTo, b, bFrom, bTo), a, aFrom, aTo, b, bFrom, bTo);
+    }
+
+    // same as put(int[], int[], ...) for slices, which are copied, unless
+    // invalidate() was called since version() returned version
+    public void put(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int length,
+                    int ancestor, long version) {
+        putSets(Arrays.copyOfRange(a, aFrom, aTo), Arrays.copyOfRange(b, bFrom, bTo),
+                pack(length, ancestor), version);
+    }
+
+    // the current version, to be passed to a put of a result that is
+    // computed afterwards
+    public long version() {
+        return version;
+    }
+
+    // drops every entry with a vertex v for which changed[v] is true, and
+    // from then on drops puts of results computed before this call
+    public synchronized void invalidate(boolean[] changed) {
+        version++;
+
+        for (int stripe = 0; stripe < locks.length; stripe++) {
+            synchronized (locks[stripe]) {
+                for (int set = stripe; set <= setMask; set += locks.length) {
+                    for (int slot = set * WAYS; slot < (set + 1) * WAYS; slot++) {
+                        if (lastUsed[slot] != 0 && touches(slot, changed)) {
+                            lastUsed[slot] = 0;
+                            idsA[slot] = null;
+                            idsB[slot] = null;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public static long pack(int length, int ancestor) {
+        return (long) length << 32 | (ancestor & 0xffffffffL);
+    }
+
+    public static int length(long value) {
+        return (int) (value >> 32);
+    }
+
+    public static int ancestor(long value) {
+        return (int) value;
+    }
+
+    public long hits() {
+        return sum(hits);
+    }
+
+    public long misses() {
+        return sum(misses);
+    }
+
+    public long evictions() {
+        return sum(evictions);
+    }
+
+    private long lookup(long key, int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        int set = set(key);
+        int stripe = set & (locks.length - 1);
+        int first = set * WAYS;
+
+        synchronized (locks[stripe]) {
+            for (int slot = first; slot < first + WAYS; slot++) {
+                if (matches(slot, key, a, aFrom, aTo, b, bFrom, bTo)) {
+                    lastUsed[slot] = ++clock[stripe];
+                    hits[stripe]++;
+                    return values[slot];
+                }
+            }
+
+            misses[stripe]++;
+            return MISS;
+        }
+    }
+
+    private void putSets(int[] a, int[] b, long value, long version) {
+        if (Arrays.compare(a, b) > 0) {
+            store(setKey(b, 0, b.length, a, 0, a.length), b, a, value, version);
+        }
+        else {
+            store(setKey(a, 0, a.length, b, 0, b.length), a, b, value, version);
+        }
+    }
+
+    private void store(long key, int[] a, int[] b, long value, long version) {
+        int set = set(key);
+        int stripe = set & (locks.length - 1);
+
+        synchronized (locks[stripe]) {
+            // checked under the lock, so a put either lands before
+            // invalidate() scans this stripe or sees the new version
+            if (version == this.version) {
+                store(set * WAYS, stripe, key, a, b, value);
+            }
+        }
+    }
+
+    private void store(int first, int stripe, long key, int[] a, int[] b, long value) {
+        int aTo = a == null ? 0 : a.length;
+        int bTo = b == null ? 0 : b.length;
+        int victim = first;
+        for (int slot = first; slot < first + WAYS; slot++) {
+            if (matches(slot, key, a, 0, aTo, b, 0, bTo)) {
+                victim = slot;
+                break;
+            }
+
+            if (lastUsed[slot] < lastUsed[victim]) {
+                victim = slot;
+            }
+        }
+
+        if (lastUsed[victim] != 0 && !matches(victim, key, a, 0, aTo, b, 0, bTo)) {
+            evictions[stripe]++;
+        }
+
+        keys[victim] = key;
+        values[victim] = value;
+        idsA[victim] = a;
+        idsB[victim] = b;
+        lastUsed[victim] = ++clock[stripe];
+    }
+
+    private long sum(long[] counters) {
+        long total = 0;
+        for (int stripe = 0; stripe < locks.length; stripe++) {
+            synchronized (locks[stripe]) {
+                total += counters[stripe];
+            }
+        }
+        return total;
+    }
+
+    // a slot is empty while lastUsed is 0
+    private boolean matches(int slot, long key, int[] a, int aFrom, int aTo, int[] b, int bFrom,
+                            int bTo) {
+        return lastUsed[slot] != 0 && keys[slot] == key
+                && (a == null
+                || Arrays.equals(idsA[slot], 0, idsA[slot].length, a, aFrom, aTo)
+                && Arrays.equals(idsB[slot], 0, idsB[slot].length, b, bFrom, bTo));
+    }
+
+    private boolean touches(int slot, boolean[] changed) {
+        if (idsA[slot] == null) {
+            long key = keys[slot];
+            return changed[(int) (key >>> 32)] || changed[(int) key];
+        }
+
+        for (int v : idsA[slot]) {
+            if (changed[v]) {
+                return true;
+            }
+        }
+
+        for (int v : idsB[slot]) {
+            if (changed[v]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int set(long key) {
+        return (int) mix(key) & setMask;
+    }
+
+    private static long pairKey(int v, int w) {
+        return v < w ? (long) v << 32 | w : (long) w << 32 | v;
+    }
+
+    private static long setKey(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo) {
+        long h = aTo - aFrom;
+        for (int i = aFrom; i < aTo; i++) {
+            h = mix(h + a[i]);
+        }
+
+        h = mix(h ^ (bTo - bFrom));
+        for (int i = bFrom; i < bTo; i++) {
+            h = mix(h + b[i]);
+        }
+        return h | SET_KEY;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
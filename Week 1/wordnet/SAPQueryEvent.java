@@ -0,0 +1,39 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Flight Recorder event for one SAP query, or one pair of a
+ *  batch, committed whenever a recording has the event enabled, whether or
+ *  not the SAP collects statistics. Its duration is the query's latency.
+ *  By default only queries slower than 1 ms are recorded; a recording can
+ *  lower the threshold to see every query.
+ **************************************************************************** */
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+@Name("wordnet.SAPQuery")
+@Label("SAP Query")
+@Category("WordNet")
+@Description("A shortest ancestral path query")
+@Threshold("1 ms")
+public class SAPQueryEvent extends jdk.jfr.Event {
+    @Label("Kind")
+    @Description("pair, sets, or batch for one pair of a batch")
+    String kind;
+
+    @Label("Outcome")
+    @Description("hit if served by the cache, search or index otherwise")
+    String outcome;
+
+    @Label("Visited Vertices")
+    int visited;
+
+    @Label("Scanned Edges")
+    int edges;
+
+    @Label("Length")
+    int length;
+}
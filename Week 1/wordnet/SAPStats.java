@@ -0,0 +1,85 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Snapshot of the instrumentation of a SAP: how its queries
+ *  were answered, how much of the digraph the searches touched, and how
+ *  long queries took, separately for cache hits and computed results.
+ **************************************************************************** */
+
+public class SAPStats {
+    private final long queries;
+    private final long cacheHits;
+    private final long searches;
+    private final long indexed;
+    private final long visitedVertices;
+    private final long scannedEdges;
+    private final long maxVisited;
+    private final LatencyHistogram hitLatency;
+    private final LatencyHistogram computedLatency;
+
+    SAPStats(long queries, long cacheHits, long searches, long indexed, long visitedVertices,
+             long scannedEdges, long maxVisited, LatencyHistogram hitLatency,
+             LatencyHistogram computedLatency) {
+        this.queries = queries;
+        this.cacheHits = cacheHits;
+        this.searches = searches;
+        this.indexed = indexed;
+        this.visitedVertices = visitedVertices;
+        this.scannedEdges = scannedEdges;
+        this.maxVisited = maxVisited;
+        this.hitLatency = hitLatency;
+        this.computedLatency = computedLatency;
+    }
+
+    public long queries() {
+        return queries;
+    }
+
+    // queries answered from the cache
+    public long cacheHits() {
+        return cacheHits;
+    }
+
+    // queries answered by a breadth-first search
+    public long searches() {
+        return searches;
+    }
+
+    // queries answered from the ancestor index
+    public long indexed() {
+        return indexed;
+    }
+
+    // vertices reached by all searches, counted once per side
+    public long visitedVertices() {
+        return visitedVertices;
+    }
+
+    // edges followed by all searches
+    public long scannedEdges() {
+        return scannedEdges;
+    }
+
+    // most vertices reached by a single search
+    public long maxVisited() {
+        return maxVisited;
+    }
+
+    public LatencyHistogram hitLatency() {
+        return hitLatency;
+    }
+
+    // latency of the queries that were searched or indexed
+    public LatencyHistogram computedLatency() {
+        return computedLatency;
+    }
+
+    public String toString() {
+        double perSearch = searches == 0 ? 0.0 : visitedVertices / (double) searches;
+        return String.format("queries=%d hits=%d searches=%d indexed=%d "
+                                     + "visited/search=%.1f maxVisited=%d edges=%d%n"
+                                     + "  hit latency: %s%n  computed latency: %s",
+                             queries, cacheHits, searches, indexed, perSearch, maxVisited,
+                             scannedEdges, hitLatency.summary(), computedLatency.summary());
+    }
+}
@@ -0,0 +1,61 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Pool of reusable per-query scratch space, such as the
+ *  arrays of a graph search. A query borrows one and gives it back when
+ *  done. At most one per processor is kept, so the memory held does not
+ *  grow with the number of threads: a thread per connection, virtual or
+ *  not, only allocates scratch while more queries run at once than there
+ *  are processors, and that scratch is garbage once given back.
+ **************************************************************************** */
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+final class ScratchPool<T> {
+    private final Supplier<T> factory;
+    private final int capacity;
+    private final ConcurrentLinkedDeque<T> idle = new ConcurrentLinkedDeque<T>();
+    // number of elements of idle; ConcurrentLinkedDeque.size() is linear
+    private final AtomicInteger size = new AtomicInteger();
+
+    ScratchPool(Supplier<T> factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    ScratchPool(Supplier<T> factory, int capacity) {
+        if (factory == null) {
+            throw new IllegalArgumentException("called ScratchPool() with a null factory");
+        }
+
+        if (capacity < 0) {
+            throw new IllegalArgumentException("called ScratchPool() with a negative capacity");
+        }
+
+        this.factory = factory;
+        this.capacity = capacity;
+    }
+
+    // scratch that no other thread uses until it is released
+    T borrow() {
+        T scratch = idle.pollFirst();
+        if (scratch == null) {
+            return factory.get();
+        }
+
+        size.decrementAndGet();
+        return scratch;
+    }
+
+    // gives back scratch from borrow(); kept for the next borrower, most
+    // recently used first, unless the pool is full
+    void release(T scratch) {
+        if (size.incrementAndGet() <= capacity) {
+            idle.offerFirst(scratch);
+        }
+        else {
+            size.decrementAndGet();
+        }
+    }
+}
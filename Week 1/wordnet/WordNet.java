@@ -4,27 +4,37 @@
  *  Description: WordNet digraph where each vertex v is an integer that
  *  represents a synset, and each directed edge v→w represents that w is a
  *  hypernym of v. The WordNet digraph is a rooted DAG: it is acyclic and has
- *  one vertex—the root—that is an ancestor of every other vertex.
+ *  one vertex—the root—that is an ancestor of every other vertex. A WordNet
+ *  may be queried from many threads while synsets and hypernyms are added:
+ *  each change publishes a new immutable state, which a query reads once.
  **************************************************************************** */
 
 import edu.princeton.cs.algs4.Digraph;
-import edu.princeton.cs.algs4.In;
 import edu.princeton.cs.algs4.StdOut;
 import edu.princeton.cs.algs4.Topological;
 
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public class WordNet {
+    // fewest pairs worth a batch task of its own
+    private static final int MIN_BATCH_TASK = 64;
 
-    private final Digraph digraph;
-    private final SAP sap;
-    private final HashMap<String, HashSet<Integer>> nouns;
-    private final HashMap<Integer, String> synsets;
+    // replaced as a whole by addSynset() and addHypernym()
+    private volatile State state;
 
     public WordNet(String synsets, String hypernyms) {
+        this(synsets, hypernyms, false);
+    }
+
+    // same as above; if indexed, builds an ancestor index up front so that
+    // distance() and sap() need no graph search
+    public WordNet(String synsets, String hypernyms, boolean indexed) {
         if (synsets == null) {
             throw new IllegalArgumentException("called WordNet() with a null synsets");
         }
@@ -33,59 +43,137 @@ public class WordNet {
             throw new IllegalArgumentException("called WordNet() with a null hypernyms");
         }
 
-        this.nouns = new HashMap<String, HashSet<Integer>>();
-        this.synsets = new HashMap<>();
+        // both files are parsed at the same time, each in parallel chunks
+        CompletableFuture<WordNetParser.Hypernyms> parsedHypernyms =
+                CompletableFuture.supplyAsync(() -> WordNetParser.readHypernyms(hypernyms));
+        WordNetParser.Synsets parsedSynsets = WordNetParser.readSynsets(synsets);
+        WordNetParser.Hypernyms edges;
+        try {
+            edges = parsedHypernyms.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
 
-        In s = new In(synsets);
-        while (!s.isEmpty()) {
-            String[] line = s.readLine().split(",");
+        NounIndex nouns = NounIndex.build(parsedSynsets);
 
-            int id = Integer.parseInt(line[0]);
-            String[] ns = line[1].split(" ");
+        // the algs4 digraph is only needed to check for cycles
+        Digraph G = new Digraph(parsedSynsets.count);
 
-            this.synsets.put(id, line[1]);
+        for (int i = 0; i < edges.count; i++) {
+            G.addEdge(edges.from[i], edges.to[i]);
+        }
 
-            for (String noun : ns) {
-                if (nouns.containsKey(noun)) {
-                    nouns.get(noun).add(id);
-                }
-                else {
-                    HashSet<Integer> ids = new HashSet<Integer>();
-                    ids.add(id);
-                    nouns.put(noun, ids);
-                }
-            }
+        Topological t = new Topological(G);
+        if (!t.hasOrder()) {
+            throw new IllegalArgumentException(
+                    "provided digraph is not a rooted DAG");
         }
 
-        HashMap<Integer, int[]> hdict = new HashMap<Integer, int[]>();
-        In h = new In(hypernyms);
-        while (!h.isEmpty()) {
-            int[] line = Arrays.stream(h.readLine().split(","))
-                               .mapToInt(Integer::parseInt)
-                               .toArray();
+        CsrDigraph digraph = new CsrDigraph(G);
+        state = new State(digraph, digraph.reverse(), nouns,
+                          new SAP(digraph, SAP.DEFAULT_CACHE_SIZE, indexed));
+    }
 
-            hdict.put(line[0], Arrays.copyOfRange(line, 1, line.length));
+    // rebuilds a WordNet from a snapshot; the snapshot was written from a
+    // validated WordNet, so the acyclicity check is not repeated
+    private WordNet(WordNetSnapshot snapshot, boolean indexed) {
+        if (snapshot.nouns.synsets() != snapshot.edgeOffsets.length - 1) {
+            throw new IllegalArgumentException("snapshot synsets do not match its digraph");
         }
 
-        digraph = new Digraph(hdict.size());
+        CsrDigraph digraph = new CsrDigraph(snapshot.edgeOffsets, snapshot.edgeTargets);
+        state = new State(digraph, digraph.reverse(), snapshot.nouns,
+                          new SAP(digraph, SAP.DEFAULT_CACHE_SIZE, indexed));
+    }
 
-        for (Map.Entry<Integer, int[]> hyp : hdict.entrySet()) {
-            for (int edge : hyp.getValue()) {
-                digraph.addEdge(hyp.getKey(), edge);
-            }
+    // loads a WordNet saved by save()
+    public static WordNet load(String snapshot) {
+        return load(snapshot, false);
+    }
+
+    // same as above, building an ancestor index if indexed
+    public static WordNet load(String snapshot, boolean indexed) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("called load() with a null snapshot");
         }
 
-        Topological t = new Topological(digraph);
-        if (!t.hasOrder()) {
+        return new WordNet(WordNetSnapshot.read(snapshot), indexed);
+    }
+
+    // writes this WordNet to a binary snapshot file that load() reads back
+    public void save(String snapshot) {
+        if (snapshot == null) {
+            throw new IllegalArgumentException("called save() with a null snapshot");
+        }
+
+        State s = state;
+        new WordNetSnapshot(s.digraph.offsets(), s.digraph.targets(), s.nouns).write(snapshot);
+    }
+
+    // adds a synset of the space-separated nouns in synset, with the given
+    // gloss, and returns its id; it has no hypernyms until addHypernym()
+    public synchronized int addSynset(String synset, String gloss) {
+        if (synset == null) {
+            throw new IllegalArgumentException("called addSynset() with a null synset");
+        }
+
+        if (gloss == null) {
+            throw new IllegalArgumentException("called addSynset() with a null gloss");
+        }
+
+        if (synset.trim().isEmpty()) {
+            throw new IllegalArgumentException("called addSynset() with no nouns");
+        }
+
+        State s = state;
+        int id = s.digraph.V();
+        CsrDigraph digraph = s.digraph.withVertex();
+        // no existing vertex gains an ancestor
+        SAP sap = s.sap.extend(digraph, new boolean[id]);
+        state = new State(digraph, s.reverse.withVertex(), s.nouns.withSynset(synset, gloss),
+                          sap);
+        return id;
+    }
+
+    // adds the edge synset->hypernym; only the ancestors of hypernym are
+    // searched to rule out a cycle, and only cached results involving
+    // synset or its descendants are dropped
+    public synchronized void addHypernym(int synset, int hypernym) {
+        State s = state;
+        int V = s.digraph.V();
+        if (synset < 0 || synset >= V || hypernym < 0 || hypernym >= V) {
+            throw new IllegalArgumentException("called addHypernym() with a synset out of range");
+        }
+
+        if (s.digraph.reaches(hypernym, synset)) {
             throw new IllegalArgumentException(
-                    "provided digraph is not a rooted DAG");
+                    "called addHypernym() with an edge that would create a cycle");
         }
 
-        sap = new SAP(digraph);
+        CsrDigraph digraph = s.digraph.withEdge(synset, hypernym);
+        CsrDigraph reverse = s.reverse.withEdge(hypernym, synset);
+        // the ancestors of synset and its descendants changed
+        SAP sap = s.sap.extend(digraph, reverse.reachable(synset));
+        state = new State(digraph, reverse, s.nouns, sap);
+    }
+
+    // starts or stops collecting query statistics; they carry over to the
+    // SAP built by addSynset() and addHypernym()
+    public synchronized void setInstrumented(boolean instrumented) {
+        state.sap.setInstrumented(instrumented);
+    }
+
+    // query statistics since instrumentation was last turned on
+    public SAPStats sapStats() {
+        return state.sap.stats();
     }
 
     public Iterable<String> nouns() {
-        return nouns.keySet();
+        return state.nouns.nouns();
     }
 
     public boolean isNoun(String word) {
@@ -93,7 +181,7 @@ public class WordNet {
             throw new IllegalArgumentException("called isNoun() with a null word");
         }
 
-        return nouns.containsKey(word);
+        return state.nouns.find(word) >= 0;
     }
 
     public int distance(String nounA, String nounB) {
@@ -105,18 +193,18 @@ public class WordNet {
             throw new IllegalArgumentException("called distance() with a null nounB");
         }
 
-        if (!isNoun(nounA)) {
+        State s = state;
+        int a = s.nouns.find(nounA);
+        if (a < 0) {
             throw new IllegalArgumentException("called distance() with not a WordNet noun nounA");
         }
 
-        if (!isNoun(nounB)) {
+        int b = s.nouns.find(nounB);
+        if (b < 0) {
             throw new IllegalArgumentException("called distance() with not a WordNet noun nounB");
         }
 
-        HashSet<Integer> idsA = nouns.get(nounA);
-        HashSet<Integer> idsB = nouns.get(nounB);
-
-        return sap.length(idsA, idsB);
+        return SAPCache.length(s.query(a, b));
     }
 
     public String sap(String nounA, String nounB) {
@@ -128,23 +216,313 @@ public class WordNet {
             throw new IllegalArgumentException("called sap() with a null nounB");
         }
 
-        if (!isNoun(nounA)) {
+        State s = state;
+        int a = s.nouns.find(nounA);
+        if (a < 0) {
             throw new IllegalArgumentException("called sap() with not a WordNet noun nounA");
         }
 
-        if (!isNoun(nounB)) {
+        int b = s.nouns.find(nounB);
+        if (b < 0) {
             throw new IllegalArgumentException("called sap() with not a WordNet noun nounB");
         }
 
-        HashSet<Integer> idsA = nouns.get(nounA);
-        HashSet<Integer> idsB = nouns.get(nounB);
+        return s.nouns.synset(SAPCache.ancestor(s.query(a, b)));
+    }
+
+    // the k nouns nearest to noun by distance(), nearest first and without
+    // noun itself; ties at the k-th distance are broken arbitrarily
+    public Iterable<String> nearestNouns(String noun, int k) {
+        if (noun == null) {
+            throw new IllegalArgumentException("called nearestNouns() with a null noun");
+        }
+
+        if (k < 0) {
+            throw new IllegalArgumentException("called nearestNouns() with a negative k");
+        }
+
+        State s = state;
+        int i = s.nouns.find(noun);
+        if (i < 0) {
+            throw new IllegalArgumentException("called nearestNouns() with not a WordNet noun");
+        }
 
-        int ancestor = sap.ancestor(idsA, idsB);
-        return this.synsets.get(ancestor);
+        return s.nearest().nearest(i, k);
     }
 
+    // distance(a[i], b[i]) for every i
+    public int[] distances(String[] a, String[] b) {
+        long[] results = batch(state, a, b, "distances");
+        int[] lengths = new int[results.length];
+        for (int i = 0; i < results.length; i++) {
+            lengths[i] = SAPCache.length(results[i]);
+        }
+        return lengths;
+    }
+
+    // sap(a[i], b[i]) for every i
+    public String[] saps(String[] a, String[] b) {
+        State s = state;
+        long[] results = batch(s, a, b, "saps");
+        String[] ancestors = new String[results.length];
+        for (int i = 0; i < results.length; i++) {
+            ancestors[i] = s.nouns.synset(SAPCache.ancestor(results[i]));
+        }
+        return ancestors;
+    }
+
+    // the packed results between a[i] and b[i] for every i. Length and
+    // ancestor do not depend on the order of a pair, so each pair is grouped
+    // by whichever of its nouns occurs more often in the batch, a[i] on a
+    // tie, and each group is answered by a single search from that noun;
+    // the groups run in parallel on the common fork-join pool
+    private long[] batch(State s, String[] a, String[] b, String method) {
+        if (a == null || b == null) {
+            throw new IllegalArgumentException("called " + method + "() with a null array");
+        }
+
+        if (a.length != b.length) {
+            throw new IllegalArgumentException(
+                    "called " + method + "() with arrays of different lengths");
+        }
+
+        int n = a.length;
+        HashMap<String, Integer> occurrences = new HashMap<String, Integer>();
+        for (int i = 0; i < n; i++) {
+            occurrences.merge(a[i], 1, Integer::sum);
+            occurrences.merge(b[i], 1, Integer::sum);
+        }
+
+        HashMap<String, Integer> groups = new HashMap<String, Integer>();
+        int[] groupOf = new int[n];
+        String[] source = new String[n];
+        int[][] idsOther = new int[n][];
+        for (int i = 0; i < n; i++) {
+            boolean fromA = occurrences.get(a[i]) >= occurrences.get(b[i]);
+            source[i] = fromA ? a[i] : b[i];
+            Integer group = groups.get(source[i]);
+            if (group == null) {
+                ids(s, source[i], method); // fails fast on a bad noun, before any search
+                group = groups.size();
+                groups.put(source[i], group);
+            }
+            groupOf[i] = group;
+            idsOther[i] = ids(s, fromA ? b[i] : a[i], method);
+        }
+
+        // pair indices sorted by group: those of group g are
+        // order[groupOffsets[g] .. groupOffsets[g + 1])
+        int[] groupOffsets = new int[groups.size() + 1];
+        for (int i = 0; i < n; i++) {
+            groupOffsets[groupOf[i] + 1]++;
+        }
+
+        for (int g = 0; g < groups.size(); g++) {
+            groupOffsets[g + 1] += groupOffsets[g];
+        }
+
+        int[] next = Arrays.copyOf(groupOffsets, groups.size());
+        int[] order = new int[n];
+        String[] sources = new String[groups.size()];
+        for (int i = 0; i < n; i++) {
+            order[next[groupOf[i]]++] = i;
+            sources[groupOf[i]] = source[i];
+        }
+
+        // a group larger than a fair share of the batch is split into tasks,
+        // each repeating the search from the source, so that a batch
+        // against a few hub nouns still runs in parallel
+        int chunk = Math.max(MIN_BATCH_TASK,
+                             n / (4 * ForkJoinPool.getCommonPoolParallelism()) + 1);
+        int[] taskFrom = new int[groups.size() + n / chunk + 1];
+        int[] taskGroup = new int[taskFrom.length];
+        int tasks = 0;
+        for (int g = 0; g < groups.size(); g++) {
+            for (int from = groupOffsets[g]; from < groupOffsets[g + 1]; from += chunk) {
+                taskFrom[tasks] = from;
+                taskGroup[tasks++] = g;
+            }
+        }
+
+        long[] results = new long[n];
+        IntStream.range(0, tasks).parallel().forEach(t -> {
+            int g = taskGroup[t];
+            int from = taskFrom[t];
+            int[][] others = new int[Math.min(chunk, groupOffsets[g + 1] - from)][];
+            for (int k = 0; k < others.length; k++) {
+                others[k] = idsOther[order[from + k]];
+            }
+
+            long[] group = s.sap.fromSource(ids(s, sources[g], method), others);
+            for (int k = 0; k < others.length; k++) {
+                results[order[from + k]] = group[k];
+            }
+        });
+
+        return results;
+    }
+
+    // distances between every pair of the given nouns, as a symmetric matrix
+    // with zeros on the diagonal; only the pairs above the diagonal are
+    // computed, one row per task in parallel, each row with a single search
+    // from its noun that is met by the search of every later noun
+    public int[][] distanceMatrix(String... nouns) {
+        if (nouns == null) {
+            throw new IllegalArgumentException("called distanceMatrix() with null nouns");
+        }
+
+        State s = state;
+        int k = nouns.length;
+        int[][] ids = new int[k][];
+        for (int i = 0; i < k; i++) {
+            ids[i] = ids(s, nouns[i], "distanceMatrix");
+        }
+
+        int[][] matrix = new int[k][k];
+        IntStream.range(0, k).parallel().forEach(i -> {
+            long[] row = s.sap.fromSource(ids[i], Arrays.copyOfRange(ids, i + 1, k));
+            for (int j = i + 1; j < k; j++) {
+                matrix[i][j] = SAPCache.length(row[j - i - 1]);
+            }
+        });
+
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < i; j++) {
+                matrix[i][j] = matrix[j][i];
+            }
+        }
+
+        return matrix;
+    }
+
+    // the sorted synset ids of noun, checked on behalf of method
+    private static int[] ids(State s, String noun, String method) {
+        if (noun == null) {
+            throw new IllegalArgumentException("called " + method + "() with a null noun");
+        }
+
+        int i = s.nouns.find(noun);
+        if (i < 0) {
+            throw new IllegalArgumentException(
+                    "called " + method + "() with not a WordNet noun " + noun);
+        }
+
+        return Arrays.copyOfRange(s.nouns.ids(), s.nouns.idsFrom(i), s.nouns.idsTo(i));
+    }
+
+    // WordNet [options] synsets hypernyms [snapshot]: builds from the text
+    // files, optionally saving a snapshot, and prints V and E; WordNet
+    // [options] snapshot: the same from a snapshot. The options are
+    //   -index   build an ancestor index
+    //   -bench   also print load time and sizes, and time distance()
+    //            between random pairs of nouns
+    //   -stats   same as -bench, also printing the query statistics
     public static void main(String[] args) {
-        WordNet w = new WordNet(args[0], args[1]);
-        StdOut.printf("V: %d, E: %d\n", w.digraph.V(), w.digraph.E());
+        boolean indexed = false;
+        boolean bench = false;
+        boolean stats = false;
+        while (args.length > 0 && args[0].startsWith("-")) {
+            if (args[0].equals("-index")) {
+                indexed = true;
+            }
+            else if (args[0].equals("-bench")) {
+                bench = true;
+            }
+            else if (args[0].equals("-stats")) {
+                bench = true;
+                stats = true;
+            }
+            else {
+                throw new IllegalArgumentException("unknown option " + args[0]);
+            }
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+
+        long start = System.nanoTime();
+        WordNet w = args.length == 1
+                    ? WordNet.load(args[0], indexed)
+                    : new WordNet(args[0], args[1], indexed);
+        long loadMillis = (System.nanoTime() - start) / 1000000;
+        State s = w.state;
+        StdOut.printf("V: %d, E: %d\n", s.digraph.V(), s.digraph.E());
+
+        if (args.length == 3) {
+            w.save(args[2]);
+        }
+
+        if (bench) {
+            benchmark(w, loadMillis, stats);
+        }
+    }
+
+    private static void benchmark(WordNet w, long loadMillis, boolean stats) {
+        State s = w.state;
+        StdOut.printf("loaded in %d ms\n", loadMillis);
+        StdOut.printf("nouns: %d, %d KiB with synsets and glosses\n", s.nouns.size(),
+                      s.nouns.memoryBytes() / 1024);
+
+        AncestorIndex index = s.sap.ancestorIndex();
+        if (index != null) {
+            StdOut.printf("index: %d entries, %d KiB, built in %d ms\n", index.size(),
+                          index.memoryBytes() / 1024, index.buildMillis());
+        }
+
+        w.setInstrumented(stats);
+        String[] words = new String[s.nouns.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = s.nouns.noun(i);
+        }
+        SplittableRandom random = new SplittableRandom(1);
+        int queries = 100000;
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            sum += w.distance(words[random.nextInt(words.length)],
+                              words[random.nextInt(words.length)]);
+        }
+        StdOut.printf("distance: %.2f us per query (checksum %d)\n",
+                      (System.nanoTime() - start) / 1000.0 / queries, sum);
+        if (stats) {
+            StdOut.println(w.sapStats());
+        }
+    }
+
+    // the digraph, nouns and SAP at one point in time; never modified
+    private static final class State {
+        private final CsrDigraph digraph;
+        // digraph with every edge reversed, updated with it, so that the
+        // descendants of a synset are found without reversing digraph again
+        private final CsrDigraph reverse;
+        private final NounIndex nouns;
+        private final SAP sap;
+        // built on the first call to nearestNouns()
+        private volatile NearestNouns nearest;
+
+        State(CsrDigraph digraph, CsrDigraph reverse, NounIndex nouns, SAP sap) {
+            this.digraph = digraph;
+            this.reverse = reverse;
+            this.nouns = nouns;
+            this.sap = sap;
+        }
+
+        // packed result between the synsets of nouns a and b, by index
+        long query(int a, int b) {
+            int[] ids = nouns.ids();
+            return sap.query(ids, nouns.idsFrom(a), nouns.idsTo(a), ids, nouns.idsFrom(b),
+                             nouns.idsTo(b));
+        }
+
+        NearestNouns nearest() {
+            NearestNouns engine = nearest;
+            if (engine == null) {
+                synchronized (this) {
+                    if (nearest == null) {
+                        nearest = new NearestNouns(digraph, nouns);
+                    }
+                    engine = nearest;
+                }
+            }
+            return engine;
+        }
     }
 }
@@ -0,0 +1,307 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Byte-level reader of the WordNet synsets and hypernyms files.
+ *  A file is read into memory in one go and cut into chunks at line breaks;
+ *  the chunks are parsed in parallel, with integers decoded in place and
+ *  noun lists split on spaces without regular expressions or intermediate
+ *  line strings.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.In;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class WordNetParser {
+    // chunks smaller than this are not worth a task of their own
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private WordNetParser() {
+    }
+
+    // lines of a synsets file, in file order
+    static final class Synsets {
+        int count;
+        int[] ids;
+        String[] texts;
+        String[] glosses;
+        String[][] nouns;
+
+        Synsets(int capacity) {
+            ids = new int[capacity];
+            texts = new String[capacity];
+            glosses = new String[capacity];
+            nouns = new String[capacity][];
+        }
+
+        private void add(int id, String text, String gloss, String[] synonyms) {
+            if (count == ids.length) {
+                int capacity = Math.max(16, count * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+                glosses = Arrays.copyOf(glosses, capacity);
+                nouns = Arrays.copyOf(nouns, capacity);
+            }
+
+            ids[count] = id;
+            texts[count] = text;
+            glosses[count] = gloss;
+            nouns[count] = synonyms;
+            count++;
+        }
+    }
+
+    // edges of a hypernyms file: from[i] -> to[i], in file order
+    static final class Hypernyms {
+        int count;
+        int[] from;
+        int[] to;
+
+        Hypernyms(int capacity) {
+            from = new int[capacity];
+            to = new int[capacity];
+        }
+
+        private void add(int v, int w) {
+            if (count == from.length) {
+                int capacity = Math.max(16, count * 2);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+            }
+
+            from[count] = v;
+            to[count] = w;
+            count++;
+        }
+    }
+
+    // lines "id,noun1 noun2 ...,gloss"; the gloss may contain commas
+    static Synsets readSynsets(String name) {
+        byte[] data = readAll(name);
+        int[] bounds = chunks(data);
+
+        Synsets[] parts = IntStream.range(0, bounds.length - 1)
+                                   .parallel()
+                                   .mapToObj(i -> parseSynsets(data, bounds[i], bounds[i + 1]))
+                                   .toArray(Synsets[]::new);
+
+        int total = 0;
+        for (Synsets part : parts) {
+            total += part.count;
+        }
+
+        Synsets all = new Synsets(total);
+        for (Synsets part : parts) {
+            System.arraycopy(part.ids, 0, all.ids, all.count, part.count);
+            System.arraycopy(part.texts, 0, all.texts, all.count, part.count);
+            System.arraycopy(part.glosses, 0, all.glosses, all.count, part.count);
+            System.arraycopy(part.nouns, 0, all.nouns, all.count, part.count);
+            all.count += part.count;
+        }
+        return all;
+    }
+
+    // lines "id,hypernym1,hypernym2,..."
+    static Hypernyms readHypernyms(String name) {
+        byte[] data = readAll(name);
+        int[] bounds = chunks(data);
+
+        Hypernyms[] parts = IntStream.range(0, bounds.length - 1)
+                                     .parallel()
+                                     .mapToObj(i -> parseHypernyms(data, bounds[i], bounds[i + 1]))
+                                     .toArray(Hypernyms[]::new);
+
+        int total = 0;
+        for (Hypernyms part : parts) {
+            total += part.count;
+        }
+
+        Hypernyms all = new Hypernyms(total);
+        for (Hypernyms part : parts) {
+            System.arraycopy(part.from, 0, all.from, all.count, part.count);
+            System.arraycopy(part.to, 0, all.to, all.count, part.count);
+            all.count += part.count;
+        }
+        return all;
+    }
+
+    private static Synsets parseSynsets(byte[] data, int from, int to) {
+        Synsets synsets = new Synsets(Math.max(16, (to - from) / 64));
+        int pos = from;
+
+        while (pos < to) {
+            // the raw line end advances pos; end excludes a CR before it
+            int lineEnd = lineEnd(data, pos, to);
+            int end = trimCr(data, pos, lineEnd);
+            if (isBlank(data, pos, end)) {
+                pos = lineEnd + 1;
+                continue;
+            }
+
+            int comma = indexOf(data, (byte) ',', pos, end);
+            int id = parseInt(data, pos, comma);
+
+            int nounsEnd = indexOf(data, (byte) ',', comma + 1, end);
+            String text = string(data, comma + 1, nounsEnd);
+            String gloss = nounsEnd < end ? string(data, nounsEnd + 1, end) : "";
+
+            synsets.add(id, text, gloss, split(data, comma + 1, nounsEnd));
+            pos = lineEnd + 1;
+        }
+
+        return synsets;
+    }
+
+    private static Hypernyms parseHypernyms(byte[] data, int from, int to) {
+        Hypernyms hypernyms = new Hypernyms(Math.max(16, (to - from) / 8));
+        int pos = from;
+
+        while (pos < to) {
+            int lineEnd = lineEnd(data, pos, to);
+            int end = trimCr(data, pos, lineEnd);
+            if (isBlank(data, pos, end)) {
+                pos = lineEnd + 1;
+                continue;
+            }
+
+            int comma = indexOf(data, (byte) ',', pos, end);
+            int id = parseInt(data, pos, comma);
+
+            while (comma < end) {
+                int next = indexOf(data, (byte) ',', comma + 1, end);
+                hypernyms.add(id, parseInt(data, comma + 1, next));
+                comma = next;
+            }
+
+            pos = lineEnd + 1;
+        }
+
+        return hypernyms;
+    }
+
+    // the nouns separated by single spaces in data[from, to)
+    private static String[] split(byte[] data, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (data[i] != ' ' && (i == from || data[i - 1] == ' ')) {
+                count++;
+            }
+        }
+
+        String[] nouns = new String[count];
+        int n = 0;
+        int start = from;
+        for (int i = from; i <= to; i++) {
+            if (i == to || data[i] == ' ') {
+                if (i > start) {
+                    nouns[n++] = string(data, start, i);
+                }
+                start = i + 1;
+            }
+        }
+        return nouns;
+    }
+
+    private static int parseInt(byte[] data, int from, int to) {
+        if (from >= to || to - from > 10) {
+            throw malformed(data, from, to);
+        }
+
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw malformed(data, from, to);
+            }
+            value = value * 10 + digit;
+        }
+
+        if (value > Integer.MAX_VALUE) {
+            throw malformed(data, from, to);
+        }
+        return (int) value;
+    }
+
+    private static IllegalArgumentException malformed(byte[] data, int from, int to) {
+        return new IllegalArgumentException("not a valid id: '" + string(data, from, to) + "'");
+    }
+
+    // chunk boundaries: 0, positions just after line breaks, data.length
+    private static int[] chunks(byte[] data) {
+        int[] bounds = new int[data.length / CHUNK_SIZE + 2];
+        int count = 1;
+
+        int pos = CHUNK_SIZE;
+        while (pos < data.length) {
+            pos = lineEnd(data, pos, data.length) + 1;
+            if (pos < data.length) {
+                bounds[count++] = pos;
+            }
+            pos += CHUNK_SIZE;
+        }
+
+        bounds[count++] = data.length;
+        return Arrays.copyOf(bounds, count);
+    }
+
+    // position of the next '\n' at or after from, or to if there is none
+    private static int lineEnd(byte[] data, int from, int to) {
+        return indexOf(data, (byte) '\n', from, to);
+    }
+
+    private static int indexOf(byte[] data, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static int trimCr(byte[] data, int from, int to) {
+        return to > from && data[to - 1] == '\r' ? to - 1 : to;
+    }
+
+    private static boolean isBlank(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] != ' ' && data[i] != '\t' && data[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String string(byte[] data, int from, int to) {
+        return new String(data, from, to - from, StandardCharsets.UTF_8);
+    }
+
+    // local files are read in one call; anything else (a URL or a resource
+    // on the classpath) goes through In, as before
+    private static byte[] readAll(String name) {
+        Path path = null;
+        try {
+            path = Paths.get(name);
+        }
+        catch (InvalidPathException e) {
+            // not a file name
+        }
+
+        if (path != null && Files.isRegularFile(path)) {
+            try {
+                return Files.readAllBytes(path);
+            }
+            catch (IOException e) {
+                throw new IllegalArgumentException("could not read " + name, e);
+            }
+        }
+
+        return new In(name).readAll().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,259 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Line protocol server for WordNet queries over TCP. Each
+ *  request is one line of space-separated words and gets exactly one line
+ *  back, in order, so a client may pipeline any number of requests on a
+ *  connection; replies are flushed whenever no further request is waiting.
+ *
+ *    distance nounA nounB       -> length of the shortest ancestral path
+ *    sap nounA nounB            -> synset of the shortest common ancestor
+ *    outcast noun1 noun2 ...    -> the outcast noun
+ *    stats                      -> latency percentiles of every endpoint
+ *
+ *  A bad request gets "error <reason>". Every connection is served by its
+ *  own thread: a virtual thread where the runtime has them, otherwise a
+ *  pooled platform thread. Connections hold no search state of their own;
+ *  queries borrow it from pools bounded by the number of processors.
+ **************************************************************************** */
+
+import edu.princeton.cs.algs4.StdOut;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class WordNetServer {
+    private static final int DEFAULT_PORT = 7777;
+    private static final String[] ENDPOINTS = { "distance", "sap", "outcast" };
+    private static final int DISTANCE = 0;
+    private static final int OUTCAST = 2;
+    // longest request line answered, in chars; longer ones get an error
+    private static final int MAX_LINE = 8192;
+    // results of readLine()
+    private static final int EOF = -1;
+    private static final int LINE = 0;
+    private static final int TOO_LONG = 1;
+    // bounds in ms of the wait after accept() fails
+    private static final long MIN_BACKOFF = 10;
+    private static final long MAX_BACKOFF = 1000;
+
+    private final WordNet wordnet;
+    private final Outcast outcast;
+    private final ServerSocket server;
+    private final ExecutorService connections;
+    // latency of ENDPOINTS[i] is recorded in latencies[i]
+    private final LatencyHistogram[] latencies;
+
+    // listens on the given port of the loopback interface; 0 picks a free port
+    public WordNetServer(WordNet wordnet, int port) {
+        if (wordnet == null) {
+            throw new IllegalArgumentException("called WordNetServer() with a null wordnet");
+        }
+
+        this.wordnet = wordnet;
+        this.outcast = new Outcast(wordnet);
+        try {
+            this.server = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not listen on port " + port, e);
+        }
+        this.connections = newThreadPerTaskExecutor();
+
+        latencies = new LatencyHistogram[ENDPOINTS.length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    // accepts connections until close() is called; while accept() keeps
+    // failing, e.g. because no file descriptors are left, reports the error
+    // and waits, twice as long after each failure up to MAX_BACKOFF ms
+    public void serve() {
+        long backoff = 0;
+        while (!server.isClosed()) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            }
+            catch (IOException e) {
+                if (server.isClosed()) {
+                    break;
+                }
+                backoff = Math.min(Math.max(2 * backoff, MIN_BACKOFF), MAX_BACKOFF);
+                System.err.printf("accept failed, retrying in %d ms: %s%n", backoff, e);
+                try {
+                    Thread.sleep(backoff);
+                }
+                catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                continue;
+            }
+            backoff = 0;
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    public void close() {
+        try {
+            server.close();
+        }
+        catch (IOException e) {
+            // nothing left to release
+        }
+        connections.shutdownNow();
+    }
+
+    // the reply to one request line, without the line terminator
+    String answer(String line) {
+        String[] words = line.trim().split(" +");
+        String command = words[0];
+        try {
+            if (command.equals("stats")) {
+                return stats();
+            }
+
+            int endpoint = Arrays.asList(ENDPOINTS).indexOf(command);
+            if (endpoint < 0) {
+                return "error unknown command " + command;
+            }
+
+            long start = System.nanoTime();
+            String reply;
+            if (endpoint == OUTCAST) {
+                reply = outcast.outcast(Arrays.copyOfRange(words, 1, words.length));
+            }
+            else if (words.length != 3) {
+                return "error usage: " + command + " nounA nounB";
+            }
+            else if (endpoint == DISTANCE) {
+                reply = Integer.toString(wordnet.distance(words[1], words[2]));
+            }
+            else {
+                reply = wordnet.sap(words[1], words[2]);
+            }
+            latencies[endpoint].record(System.nanoTime() - start);
+            return reply;
+        }
+        catch (IllegalArgumentException e) {
+            return "error " + e.getMessage();
+        }
+        catch (RuntimeException e) {
+            // still one reply per request, so pipelined replies stay in step
+            System.err.println("internal error answering \"" + line + "\": " + e);
+            e.printStackTrace();
+            return "error internal";
+        }
+    }
+
+    // reads requests and writes replies until the client closes the connection
+    private void handle(Socket socket) {
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(
+                     new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            StringBuilder line = new StringBuilder();
+            int read;
+            while ((read = readLine(in, line)) != EOF) {
+                out.write(read == TOO_LONG
+                          ? "error request longer than " + MAX_LINE + " characters"
+                          : answer(line.toString()));
+                out.write('\n');
+                // replies to pipelined requests go out together
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+            out.flush();
+        }
+        catch (IOException e) {
+            // the client went away; nothing to answer
+        }
+    }
+
+    // reads the next line, without its terminator, into line: LINE if it was
+    // read, TOO_LONG if it ran past MAX_LINE chars, in which case the rest of
+    // it is skipped, or EOF at the end of the stream. Lines end at "\n",
+    // with a "\r" before it dropped; a last line without one still counts
+    private static int readLine(BufferedReader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        boolean tooLong = false;
+        int c = in.read();
+        if (c < 0) {
+            return EOF;
+        }
+
+        for (; c >= 0 && c != '\n'; c = in.read()) {
+            if (line.length() < MAX_LINE + 1) {
+                line.append((char) c);
+            }
+            else {
+                tooLong = true;
+            }
+        }
+
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(--length);
+        }
+        return tooLong || length > MAX_LINE ? TOO_LONG : LINE;
+    }
+
+    private String stats() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ENDPOINTS.length; i++) {
+            if (i > 0) {
+                sb.append("; ");
+            }
+            sb.append(ENDPOINTS[i]).append(' ').append(latencies[i].summary());
+        }
+        return sb.toString();
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() where the runtime has it;
+    // looked up reflectively so that this also runs on older runtimes
+    private static ExecutorService newThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // WordNetServer synsets hypernyms [port] or WordNetServer snapshot [port]
+    public static void main(String[] args) {
+        int files = args.length;
+        int port = DEFAULT_PORT;
+        if (files > 1 && args[files - 1].matches("\\d+")) {
+            port = Integer.parseInt(args[--files]);
+        }
+
+        WordNet wordnet = files == 1 ? WordNet.load(args[0]) : new WordNet(args[0], args[1]);
+        WordNetServer server = new WordNetServer(wordnet, port);
+        StdOut.println("listening on localhost:" + server.port());
+        server.serve();
+    }
+}
@@ -0,0 +1,210 @@
+/* *****************************************************************************
+ *  Name: Ihor Nikora
+ *  Date: 2026-10-18
+ *  Description: Compiled binary form of a WordNet. It holds the hypernym
+ *  digraph in compressed sparse row form, the nouns in sorted order with the
+ *  ids of their synsets, and the text and gloss of every synset. All int
+ *  arrays come first and all UTF-8 text last, so a snapshot is loaded by
+ *  mapping the file, with nothing to parse or decode.
+ *
+ *  The text sections, the bulk of the file, are not copied: the NounIndex
+ *  reads them straight from the read-only mapping, so several JVMs loading
+ *  the same snapshot share one copy of them in the page cache. The int
+ *  sections are copied to the heap, because nothing would be shared by
+ *  mapping them: SAP renumbers the digraph into arrays of its own, and the
+ *  ancestor index and nearest-noun search derive theirs from it, while the
+ *  noun offsets and ids are read on every query, where array access is
+ *  cheapest.
+ *
+ *  Layout, little-endian:
+ *    int magic, version, V, E, nounCount, nounIdCount
+ *    int[V + 1] edgeOffsets, int[E] edgeTargets
+ *    int[nounCount + 1] nounTextOffsets, int[nounCount + 1] nounIdOffsets,
+ *    int[nounIdCount] nounIds, int[V + 1] synsetTextOffsets,
+ *    int[V + 1] glossOffsets
+ *    byte[] noun text, byte[] synset text, byte[] gloss text
+ *
+ *  The text sections are the arrays of a NounIndex, nouns in code point
+ *  order, and are used as they are.
+ **************************************************************************** */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class WordNetSnapshot {
+    private static final int MAGIC = 0x574e5331;
+    // version 2: nouns in code point order, text kept as UTF-8
+    private static final int VERSION = 2;
+    private static final int HEADER_INTS = 6;
+
+    // hypernym edges of vertex v are edgeTargets[edgeOffsets[v] .. edgeOffsets[v + 1])
+    final int[] edgeOffsets;
+    final int[] edgeTargets;
+    final NounIndex nouns;
+
+    WordNetSnapshot(int[] edgeOffsets, int[] edgeTargets, NounIndex nouns) {
+        this.edgeOffsets = edgeOffsets;
+        this.edgeTargets = edgeTargets;
+        this.nouns = nouns;
+    }
+
+    void write(String file) {
+        long ints = HEADER_INTS + edgeOffsets.length + edgeTargets.length
+                + nouns.nounOffsets.length + nouns.idOffsets.length + nouns.ids.length
+                + nouns.synsetOffsets.length + nouns.glossOffsets.length;
+        long bytes = (long) nouns.nounText.capacity() + nouns.synsetText.capacity()
+                + nouns.glossText.capacity();
+        long size = ints * Integer.BYTES + bytes;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("WordNet too large for a snapshot");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION)
+              .putInt(nouns.synsets()).putInt(edgeTargets.length)
+              .putInt(nouns.size()).putInt(nouns.ids.length);
+
+        IntBuffer out = buffer.asIntBuffer();
+        out.put(edgeOffsets).put(edgeTargets)
+           .put(nouns.nounOffsets).put(nouns.idOffsets).put(nouns.ids)
+           .put(nouns.synsetOffsets).put(nouns.glossOffsets);
+        buffer.position(buffer.position() + out.position() * Integer.BYTES);
+
+        // duplicates, so that the shared buffers' positions are not moved
+        buffer.put(nouns.nounText.duplicate().clear())
+              .put(nouns.synsetText.duplicate().clear())
+              .put(nouns.glossText.duplicate().clear());
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.CREATE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING,
+                                                    StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not write " + file, e);
+        }
+    }
+
+    static WordNetSnapshot read(String file) {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("could not read " + file, e);
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IllegalArgumentException(file + " is not a WordNet snapshot");
+            }
+
+            int V = buffer.getInt();
+            int E = buffer.getInt();
+            int nounCount = buffer.getInt();
+            int nounIdCount = buffer.getInt();
+            if (V < 0 || E < 0 || nounCount < 0 || nounIdCount < 0) {
+                throw corrupt(file, "negative section size");
+            }
+
+            long ints = 3L * V + 3 + E + 2L * nounCount + 2 + nounIdCount;
+            if (ints * Integer.BYTES > buffer.remaining()) {
+                throw corrupt(file, "truncated");
+            }
+
+            IntBuffer in = buffer.asIntBuffer();
+            int[] edgeOffsets = ints(in, V + 1);
+            int[] edgeTargets = ints(in, E);
+            int[] nounOffsets = ints(in, nounCount + 1);
+            int[] idOffsets = ints(in, nounCount + 1);
+            int[] ids = ints(in, nounIdCount);
+            int[] synsetOffsets = ints(in, V + 1);
+            int[] glossOffsets = ints(in, V + 1);
+            buffer.position(buffer.position() + in.position() * Integer.BYTES);
+
+            // everything the digraph and the noun index index into, checked
+            // here so that a damaged file fails now and not inside a query
+            checkSlices(file, edgeOffsets);
+            checkSlices(file, nounOffsets);
+            checkSlices(file, idOffsets);
+            checkSlices(file, synsetOffsets);
+            checkSlices(file, glossOffsets);
+            if (edgeOffsets[V] != E || idOffsets[nounCount] != nounIdCount) {
+                throw corrupt(file, "offsets do not match the section sizes");
+            }
+
+            // three ints add up without overflow in a long
+            if ((long) nounOffsets[nounCount] + synsetOffsets[V] + glossOffsets[V]
+                    != buffer.remaining()) {
+                throw corrupt(file, "text sections do not match the file size");
+            }
+
+            checkIds(file, edgeTargets, V, "edge target");
+            checkIds(file, ids, V, "noun synset id");
+
+            ByteBuffer nounText = slice(buffer, nounOffsets[nounCount]);
+            ByteBuffer synsetText = slice(buffer, synsetOffsets[V]);
+            ByteBuffer glossText = slice(buffer, glossOffsets[V]);
+
+            return new WordNetSnapshot(edgeOffsets, edgeTargets,
+                                       new NounIndex(nounText, nounOffsets, idOffsets, ids,
+                                                     synsetText, synsetOffsets, glossText,
+                                                     glossOffsets));
+        }
+        catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            throw new IllegalArgumentException(file + " is a corrupt WordNet snapshot", e);
+        }
+    }
+
+    private static IllegalArgumentException corrupt(String file, String reason) {
+        return new IllegalArgumentException(file + " is a corrupt WordNet snapshot: " + reason);
+    }
+
+    // offsets start at 0 and never decrease
+    private static void checkSlices(String file, int[] offsets) {
+        if (offsets[0] != 0) {
+            throw corrupt(file, "offsets do not start at 0");
+        }
+
+        for (int i = 1; i < offsets.length; i++) {
+            if (offsets[i - 1] > offsets[i]) {
+                throw corrupt(file, "offsets not in order");
+            }
+        }
+    }
+
+    // every id is a vertex of a digraph of V vertices
+    private static void checkIds(String file, int[] ids, int V, String what) {
+        for (int id : ids) {
+            if (id < 0 || id >= V) {
+                throw corrupt(file, what + " " + id + " out of range");
+            }
+        }
+    }
+
+    private static int[] ints(IntBuffer in, int count) {
+        int[] values = new int[count];
+        in.get(values);
+        return values;
+    }
+
+    // the next count bytes of buffer, as a view that shares the mapping
+    private static ByteBuffer slice(ByteBuffer buffer, int count) {
+        ByteBuffer values = buffer.slice(buffer.position(), count);
+        buffer.position(buffer.position() + count);
+        return values;
+    }
+}
@@ -7,18 +7,33 @@
  **************************************************************************** */
 
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.StdRandom;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 public class RandomizedQueue<Item> implements Iterable<Item> {
 
     private int size;
     private Item[] arr;
+    private final RandomGenerator random;
 
-    // construct an empty randomized queue
+    // construct an empty randomized queue; seeded from the calling thread's
+    // generator, so queues made in parallel do not contend on a shared seed
     public RandomizedQueue() {
+        this(new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+    }
+
+    // construct an empty randomized queue drawing from the given generator,
+    // e.g. a seeded one to replay the same order of items
+    public RandomizedQueue(RandomGenerator random) {
+        if (random == null) {
+            throw new IllegalArgumentException();
+        }
+
+        this.random = random;
         size = 0;
         arr = (Item[]) new Object[2];
     }
@@ -52,7 +67,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             throw new NoSuchElementException();
         }
 
-        int idx = StdRandom.uniform(0, size);
+        int idx = random.nextInt(size);
 
         Item item = arr[idx];
         Item last = arr[--size];
@@ -73,7 +88,7 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
             throw new NoSuchElementException();
         }
 
-        int idx = StdRandom.uniform(0, size);
+        int idx = random.nextInt(size);
 
         Item item = arr[idx];
 
@@ -93,7 +108,12 @@ public class RandomizedQueue<Item> implements Iterable<Item> {
                 shuffledIndexes[i] = i;
             }
 
-            StdRandom.shuffle(shuffledIndexes);
+            for (int i = shuffledIndexes.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = shuffledIndexes[i];
+                shuffledIndexes[i] = shuffledIndexes[j];
+                shuffledIndexes[j] = tmp;
+            }
         }
 
         public boolean hasNext() {
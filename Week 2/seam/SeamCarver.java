@@ -13,6 +13,9 @@ public class SeamCarver {
     private static final boolean HORIZONTAL = false;
 
     private int[][] rgb;
+    // energy of every pixel, laid out and transposed together with rgb and
+    // updated only next to removed seams
+    private double[][] energy;
     private boolean transposed;
 
     public SeamCarver(Picture picture) {
@@ -24,12 +27,17 @@ public class SeamCarver {
             for (int col = 0; col < picture.width(); col++)
                 rgb[col][row] = picture.getRGB(col, row);
 
+        energy = new double[width()][height()];
+        for (int col = 0; col < width(); col++)
+            for (int row = 0; row < height(); row++)
+                energy[col][row] = computeEnergy(col, row);
+
         transposed = false;
     }
 
     public Picture picture() {
         if (transposed)
-            rgb = transposeBack();
+            transposeBack();
 
         Picture picture = new Picture(width(), height());
 
@@ -52,36 +60,30 @@ public class SeamCarver {
         validateX(x);
         validateY(y);
 
-        if (x == 0 || y == 0 || x == width() - 1 || y == height() - 1)
-            return 1000.0;
-
-        int xg = xGradient(x, y);
-        int yg = yGradient(x, y);
-
-        return Math.sqrt(xg + yg);
+        return energy[x][y];
     }
 
     public int[] findVerticalSeam() {
         if (transposed)
-            rgb = transposeBack();
+            transposeBack();
 
         return findSeam(VERTICAL);
     }
 
     public int[] findHorizontalSeam() {
         if (!transposed)
-            rgb = transpose();
+            transpose();
 
         return findSeam(HORIZONTAL);
     }
 
     public void removeHorizontalSeam(int[] seam) {
         if (!transposed)
-            rgb = transpose();
+            transpose();
 
         removeSeam(seam, HORIZONTAL);
 
-        rgb = transposeBack();
+        transposeBack();
     }
 
     public void removeVerticalSeam(int[] seam) {
@@ -129,6 +131,17 @@ public class SeamCarver {
                     "y " + y + " is outside current picture's height of " + height());
     }
 
+    // energy of pixel (x, y) in the current orientation of rgb
+    private double computeEnergy(int x, int y) {
+        if (x == 0 || y == 0 || x == width() - 1 || y == height() - 1)
+            return 1000.0;
+
+        int xg = xGradient(x, y);
+        int yg = yGradient(x, y);
+
+        return Math.sqrt(xg + yg);
+    }
+
     private int xGradient(int x, int y) {
         int rgbX1 = rgb[x - 1][y];
         int rgbX2 = rgb[x + 1][y];
@@ -151,33 +164,43 @@ public class SeamCarver {
         return (dyr * dyr) + (dyg * dyg) + (dyb * dyb);
     }
 
-    private int[][] transpose() {
-        int[][] transposedRgb = new int[height()][width()];
+    private void transpose() {
+        rgb = transpose(rgb);
+        energy = transpose(energy);
+        transposed = true;
+    }
 
-        for (int col = 0; col < width(); col++)
-            for (int row = 0; row < height(); row++)
-                transposedRgb[row][col] = rgb[col][row];
+    private void transposeBack() {
+        rgb = transpose(rgb);
+        energy = transpose(energy);
+        transposed = false;
+    }
 
-        transposed = true;
-        return transposedRgb;
+    private static int[][] transpose(int[][] a) {
+        int[][] t = new int[a[0].length][a.length];
+
+        for (int col = 0; col < a.length; col++)
+            for (int row = 0; row < a[0].length; row++)
+                t[row][col] = a[col][row];
+
+        return t;
     }
 
-    private int[][] transposeBack() {
-        int[][] normal = new int[height()][width()];
+    private static double[][] transpose(double[][] a) {
+        double[][] t = new double[a[0].length][a.length];
 
-        for (int col = 0; col < width(); col++)
-            for (int row = height() - 1; row >= 0; row--)
-                normal[row][col] = rgb[col][row];
+        for (int col = 0; col < a.length; col++)
+            for (int row = 0; row < a[0].length; row++)
+                t[row][col] = a[col][row];
 
-        transposed = false;
-        return normal;
+        return t;
     }
 
     private int[] findSeam(boolean vertical) {
         if (vertical && transposed)
-            rgb = transposeBack();
+            transposeBack();
         else if (!vertical && !transposed)
-            rgb = transpose();
+            transpose();
 
         if (width() <= 1) {
             int[] seam = new int[height()];
@@ -187,13 +210,6 @@ public class SeamCarver {
 
         int[] edgeTo = new int[height()];
         double[][] distTo = new double[width()][height()];
-        double[][] energy = new double[width()][height()];
-
-        for (int y = 0; y < height(); y++)
-            for (int x = 0; x < width(); x++) {
-                distTo[x][y] = Double.POSITIVE_INFINITY;
-                energy[x][y] = energy(x, y);
-            }
 
         for (int y = 0; y < height(); y++)
             for (int x = 0; x < width(); x++) {
@@ -233,7 +249,7 @@ public class SeamCarver {
                 }
             }
 
-            if (lastCol + 1 <= width())
+            if (lastCol + 1 < width())
                 if (distTo[lastCol + 1][row] < min)
                     edgeTo[row] = lastCol + 1;
 
@@ -241,7 +257,7 @@ public class SeamCarver {
         }
 
         if (!vertical && transposed)
-            rgb = transposeBack();
+            transposeBack();
 
         return edgeTo;
     }
@@ -267,18 +283,28 @@ public class SeamCarver {
         }
 
         if (vertical && transposed)
-            rgb = transposeBack();
+            transposeBack();
         else if (!vertical && !transposed)
-            rgb = transpose();
+            transpose();
+
+        // shift what is right of the seam one column left, row by row, and
+        // drop the last column
+        int lastCol = width() - 1;
+        for (int row = 0; row < height(); row++)
+            for (int col = seam[row]; col < lastCol; col++) {
+                rgb[col][row] = rgb[col + 1][row];
+                energy[col][row] = energy[col + 1][row];
+            }
 
-        int[][] newPic = new int[width() - 1][height()];
-        for (int col = 0; col < width(); col++)
-            for (int row = 0; row < height(); row++)
-                if (col < seam[row])
-                    newPic[col][row] = rgb[col][row];
-                else if (col > seam[row])
-                    newPic[col - 1][row] = rgb[col][row];
+        rgb = Arrays.copyOf(rgb, lastCol);
+        energy = Arrays.copyOf(energy, lastCol);
 
-        rgb = newPic;
+        // only the pixels either side of the seam got new neighbours: the
+        // ones on its row by the shift, the ones above and below it because
+        // adjacent rows shifted from columns at most one apart
+        for (int row = 0; row < height(); row++)
+            for (int col = Math.max(seam[row] - 1, 0); col <= Math.min(seam[row], lastCol - 1);
+                 col++)
+                energy[col][row] = computeEnergy(col, row);
     }
 }
@@ -7,27 +7,40 @@
 
 import edu.princeton.cs.algs4.Queue;
 import edu.princeton.cs.algs4.StdOut;
-import edu.princeton.cs.algs4.StdRandom;
 
 import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 public class Board {
     private final int[][] tiles;
     private final int n;
-    private int row1;
-    private int col1;
-    private int row2;
-    private int col2;
+    // twin() exchanges the tiles at (row1, col1) and (row2, col2)
+    private final int row1;
+    private final int col1;
+    private final int row2;
+    private final int col2;
     private final int hammingDistance;
     private final int manhattanDistance;
 
     // create a board from an n-by-n array of tiles,
     // where tiles[row][col] = tile at (row, col)
     public Board(int[][] tiles) {
+        this(tiles, ThreadLocalRandom.current());
+    }
+
+    // same as above, picking the twin tiles with the given generator; it is
+    // only used here, as neighbors and twins carry those tiles along, so one
+    // seeded generator replays a whole search
+    public Board(int[][] tiles, RandomGenerator random) {
         if (tiles == null) {
             throw new IllegalArgumentException("argument 'tiles' is null");
         }
 
+        if (random == null) {
+            throw new IllegalArgumentException("argument 'random' is null");
+        }
+
         if (tiles.length < 2) {
             throw new IllegalArgumentException("board too small");
         }
@@ -43,11 +56,38 @@ public class Board {
             this.tiles[r] = tiles[r].clone();
         }
 
-        row1 = StdRandom.uniform(n);
-        col1 = StdRandom.uniform(n);
+        int r1;
+        int c1;
+        do {
+            r1 = random.nextInt(n);
+            c1 = random.nextInt(n);
+        } while (this.tiles[r1][c1] == 0);
+
+        int r2;
+        int c2;
+        do {
+            r2 = random.nextInt(n);
+            c2 = random.nextInt(n);
+        } while (this.tiles[r2][c2] == 0 || (r2 == r1 && c2 == c1));
+
+        row1 = r1;
+        col1 = c1;
+        row2 = r2;
+        col2 = c2;
 
-        row2 = StdRandom.uniform(n);
-        col2 = StdRandom.uniform(n);
+        hammingDistance = calculateHammingDistance();
+        manhattanDistance = calculateManhattanDistance();
+    }
+
+    // a board that owns the given tiles and whose twin exchanges the two
+    // given non-blank tiles
+    private Board(int[][] tiles, int row1, int col1, int row2, int col2) {
+        this.n = tiles.length;
+        this.tiles = tiles;
+        this.row1 = row1;
+        this.col1 = col1;
+        this.row2 = row2;
+        this.col2 = col2;
 
         hammingDistance = calculateHammingDistance();
         manhattanDistance = calculateManhattanDistance();
@@ -159,57 +199,48 @@ public class Board {
         }
 
         if (emptyRow > 0) {
-            int[][] arr = copy(this.tiles);
-            arr[emptyRow][emptyCol] = arr[emptyRow - 1][emptyCol];
-            arr[emptyRow - 1][emptyCol] = 0;
-
-            neighbors.enqueue(new Board(arr));
+            neighbors.enqueue(slide(emptyRow, emptyCol, emptyRow - 1, emptyCol));
         }
 
         if (emptyRow < n - 1) {
-            int[][] arr = copy(this.tiles);
-            arr[emptyRow][emptyCol] = arr[emptyRow + 1][emptyCol];
-            arr[emptyRow + 1][emptyCol] = 0;
-
-            neighbors.enqueue(new Board(arr));
+            neighbors.enqueue(slide(emptyRow, emptyCol, emptyRow + 1, emptyCol));
         }
 
         if (emptyCol > 0) {
-            int[][] arr = copy(this.tiles);
-            arr[emptyRow][emptyCol] = arr[emptyRow][emptyCol - 1];
-            arr[emptyRow][emptyCol - 1] = 0;
-
-            neighbors.enqueue(new Board(arr));
+            neighbors.enqueue(slide(emptyRow, emptyCol, emptyRow, emptyCol - 1));
         }
 
         if (emptyCol < n - 1) {
-            int[][] arr = copy(this.tiles);
-            arr[emptyRow][emptyCol] = arr[emptyRow][emptyCol + 1];
-            arr[emptyRow][emptyCol + 1] = 0;
-
-            neighbors.enqueue(new Board(arr));
+            neighbors.enqueue(slide(emptyRow, emptyCol, emptyRow, emptyCol + 1));
         }
 
         return neighbors;
     }
 
-    // a board that is obtained by exchanging any pair of tiles
-    public Board twin() {
-        int[][] copy = copy(tiles);
+    // the board with the tile at (row, col) slid into the blank square;
+    // its twin exchanges the same two tiles as this one's
+    private Board slide(int emptyRow, int emptyCol, int row, int col) {
+        int[][] arr = copy(this.tiles);
+        arr[emptyRow][emptyCol] = arr[row][col];
+        arr[row][col] = 0;
 
-        while (tiles[row1][col1] == 0) {
-            row1 = StdRandom.uniform(n);
-            col1 = StdRandom.uniform(n);
+        if (row == row1 && col == col1) {
+            return new Board(arr, emptyRow, emptyCol, row2, col2);
         }
 
-        while (tiles[row2][col2] == 0 || row2 - row1 + col2 - col1 == 0) {
-            row2 = StdRandom.uniform(n);
-            col2 = StdRandom.uniform(n);
+        if (row == row2 && col == col2) {
+            return new Board(arr, row1, col1, emptyRow, emptyCol);
         }
 
+        return new Board(arr, row1, col1, row2, col2);
+    }
+
+    // a board that is obtained by exchanging any pair of tiles
+    public Board twin() {
+        int[][] copy = copy(tiles);
         copy[row2][col2] = tiles[row1][col1];
         copy[row1][col1] = tiles[row2][col2];
-        return new Board(copy);
+        return new Board(copy, row1, col1, row2, col2);
     }
 
     // unit testing (not graded)